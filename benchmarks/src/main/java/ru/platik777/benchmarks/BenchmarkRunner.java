@@ -0,0 +1,29 @@
+package ru.platik777.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа benchmarks.jar. Принимает обычные аргументы JMH и всегда добавляет GC-профайлер,
+ * чтобы в отчёте были gc.alloc.rate.norm — байты на операцию, по которым видно регрессии.
+ *
+ * <pre>
+ * mvn -B package
+ * java -jar target/benchmarks.jar              # все бенчмарки
+ * java -jar target/benchmarks.jar HL7 -f 1     # только HL7
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
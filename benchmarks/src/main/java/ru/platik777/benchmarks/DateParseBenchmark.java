@@ -0,0 +1,39 @@
+package ru.platik777.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PID-7 в PatientService разбирается через DateTimeFormatter.ofPattern на каждый вызов;
+ * сравнение с общим форматтером.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DateParseBenchmark {
+
+    private static final DateTimeFormatter SHARED = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final String dateOfBirth = "19800203";
+
+    @Benchmark
+    public LocalDate formatterPerCall() {
+        return LocalDate.parse(dateOfBirth, DateTimeFormatter.ofPattern("yyyyMMdd"));
+    }
+
+    @Benchmark
+    public LocalDate sharedFormatter() {
+        return LocalDate.parse(dateOfBirth, SHARED);
+    }
+
+    @Benchmark
+    public LocalDate basicIsoDate() {
+        return LocalDate.parse(dateOfBirth, DateTimeFormatter.BASIC_ISO_DATE);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.platik777.benchmarks;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.model.v25.message.ADT_A01;
+import ca.uhn.hl7v2.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.hl7.AdtMessageWriter;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение ADT_A01/ADT_A03 в reception-api и кодирование PipeParser — стоимость одного сообщения в HIS.
+ * buildAndEncodeAdmission — прежний путь через модель HAPI (HapiAdtMessages), writeAdmission —
+ * AdtMessageWriter, которым пользуется отправка; разница в байтах на сообщение видна в gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class HL7EncodeBenchmark {
+
+    private Parser parser;
+    private Patient patient;
+    private ADT_A01 admission;
+
+    @Setup
+    public void setUp() throws Exception {
+        parser = new DefaultHapiContext().getPipeParser();
+
+        patient = new Patient();
+        patient.setId(123456L);
+        patient.setFirstName("Иван");
+        patient.setLastName("Петров");
+        patient.setDateOfBirth(LocalDate.of(1980, 2, 3));
+
+        admission = HapiAdtMessages.admission(patient);
+    }
+
+    @Benchmark
+    public Object buildAdmission() throws Exception {
+        return HapiAdtMessages.admission(patient);
+    }
+
+    @Benchmark
+    public Object buildDischarge() throws Exception {
+        return HapiAdtMessages.discharge(patient);
+    }
+
+    @Benchmark
+    public String encodeAdmission() throws Exception {
+        return parser.encode(admission);
+    }
+
+    @Benchmark
+    public String buildAndEncodeAdmission() throws Exception {
+        return parser.encode(HapiAdtMessages.admission(patient));
+    }
+
+    @Benchmark
+    public Object writeAdmission() {
+        return AdtMessageWriter.admission(patient, "123456");
+    }
+
+    @Benchmark
+    public Object writeDischarge() {
+        return AdtMessageWriter.discharge(patient, "123456");
+    }
+}
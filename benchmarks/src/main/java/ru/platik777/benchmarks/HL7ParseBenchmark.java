@@ -0,0 +1,66 @@
+package ru.platik777.benchmarks;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+import ru.platik777.hisserver.hl7.AdtMessage;
+import ru.platik777.hisserver.hl7.FastAdtParser;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.hl7.AdtMessageWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ADT в his-server: PipeParser.parse и извлечение MSH-10/PID в AdtMessage, против FastAdtParser,
+ * который работает прямо с байтами кадра (hl7.fast-path.enabled=true).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class HL7ParseBenchmark {
+
+    private Parser parser;
+    private String encoded;
+    private byte[] frame;
+    private Message parsed;
+
+    @Setup
+    public void setUp() throws Exception {
+        Patient patient = new Patient();
+        patient.setId(123456L);
+        patient.setFirstName("Иван");
+        patient.setLastName("Петров");
+        patient.setDateOfBirth(LocalDate.of(1980, 2, 3));
+
+        parser = new DefaultHapiContext().getPipeParser();
+        encoded = AdtMessageWriter.admission(patient, "123456").text();
+        parsed = parser.parse(encoded);
+        frame = encoded.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Message parse() throws Exception {
+        return parser.parse(encoded);
+    }
+
+    @Benchmark
+    public AdtMessage extractFields() throws Exception {
+        return AdtMessage.from(parsed);
+    }
+
+    @Benchmark
+    public AdtMessage parseAndExtract() throws Exception {
+        return AdtMessage.from(parser.parse(encoded));
+    }
+
+    @Benchmark
+    public FastAdtParser.Parsed fastParse() {
+        return FastAdtParser.parse(frame, frame.length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.platik777.benchmarks;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.v25.message.ADT_A01;
+import ca.uhn.hl7v2.model.v25.message.ADT_A03;
+import ca.uhn.hl7v2.model.v25.segment.EVN;
+import ca.uhn.hl7v2.model.v25.segment.MSH;
+import ca.uhn.hl7v2.model.v25.segment.PID;
+import ca.uhn.hl7v2.model.v25.segment.PV1;
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Прежнее построение ADT через модель HAPI, которое заменил AdtMessageWriter. Оставлено только как точка
+ * отсчёта для HL7EncodeBenchmark.
+ */
+final class HapiAdtMessages {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private HapiAdtMessages() {
+    }
+
+    static ADT_A01 admission(Patient patient) throws HL7Exception, IOException {
+        ADT_A01 message = new ADT_A01();
+        message.initQuickstart("ADT", "A01", "P");
+        fill(message.getMSH(), message.getEVN(), message.getPID(), message.getPV1(), patient);
+        return message;
+    }
+
+    static ADT_A03 discharge(Patient patient) throws HL7Exception, IOException {
+        ADT_A03 message = new ADT_A03();
+        message.initQuickstart("ADT", "A03", "P");
+        fill(message.getMSH(), message.getEVN(), message.getPID(), message.getPV1(), patient);
+        return message;
+    }
+
+    private static void fill(MSH msh, EVN evn, PID pid, PV1 pv1, Patient patient) throws HL7Exception {
+        msh.getSendingApplication().getNamespaceID().setValue("RECEPTION");
+        msh.getSendingFacility().getNamespaceID().setValue("HOSPITAL");
+        msh.getReceivingApplication().getNamespaceID().setValue("HIS");
+        msh.getReceivingFacility().getNamespaceID().setValue("HOSPITAL");
+        evn.getRecordedDateTime().getTime().setValue(LocalDateTime.now().format(TIMESTAMP));
+
+        pid.getPatientIdentifierList(0).getIDNumber().setValue(patient.getId().toString());
+        pid.getPatientName(0).getFamilyName().getSurname().setValue(patient.getLastName());
+        pid.getPatientName(0).getGivenName().setValue(patient.getFirstName());
+        pid.getDateTimeOfBirth().getTime().setValue(patient.getDateOfBirth().format(DATE));
+
+        if (patient.getWard() != null) {
+            pv1.getPatientClass().setValue("I");
+            pv1.getAssignedPatientLocation().getPointOfCare().setValue(patient.getWard());
+        }
+    }
+}
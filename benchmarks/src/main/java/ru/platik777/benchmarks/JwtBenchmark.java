@@ -0,0 +1,60 @@
+package ru.platik777.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.platik777.receptionapi.security.JwtUtil;
+import ru.platik777.receptionapi.security.VerifiedTokenCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выпуск и проверка JWT. legacyFilterPath повторяет прежний JwtAuthenticationFilter
+ * (extractUsername + isTokenValid — три разбора), verifyOnce — текущий промах кэша,
+ * cachedToken — попадание в VerifiedTokenCache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "e9b03f2182b9c7172d6b8d7c092bcccc3d92b8188d736012b7c56875ac5c2d3f";
+
+    private JwtUtil jwtUtil;
+    private VerifiedTokenCache tokenCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 28_800_000L);
+        tokenCache = new VerifiedTokenCache(10_000, new SimpleMeterRegistry());
+        token = jwtUtil.generateToken("reception");
+
+        Claims claims = jwtUtil.verify(token);
+        tokenCache.put(token, claims.getSubject(), claims.getExpiration().getTime());
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtUtil.generateToken("reception");
+    }
+
+    @Benchmark
+    public boolean legacyFilterPath() {
+        String username = jwtUtil.extractUsername(token);
+        return jwtUtil.isTokenValid(token, username);
+    }
+
+    @Benchmark
+    public String verifyOnce() {
+        return jwtUtil.verify(token).getSubject();
+    }
+
+    @Benchmark
+    public String cachedToken() {
+        return tokenCache.get(token);
+    }
+}
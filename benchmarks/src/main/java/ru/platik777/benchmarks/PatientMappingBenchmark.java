@@ -0,0 +1,55 @@
+package ru.platik777.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.platik777.receptionapi.dto.PatientResponse;
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Маппинг Patient → PatientResponse, как в PatientController, для одной записи и страницы.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PatientMappingBenchmark {
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private Patient patient;
+    private List<Patient> page;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Patient p = new Patient();
+            p.setId((long) i);
+            p.setFirstName("Иван");
+            p.setLastName("Петров");
+            p.setDateOfBirth(LocalDate.of(1980, 2, 3));
+            page.add(p);
+        }
+        patient = page.get(0);
+    }
+
+    @Benchmark
+    public PatientResponse single() {
+        return PatientResponse.from(patient);
+    }
+
+    @Benchmark
+    public List<PatientResponse> page() {
+        return page.stream()
+                .map(PatientResponse::from)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,25 +1,21 @@
 package ru.platik777.hisserver;
 
 import ca.uhn.hl7v2.DefaultHapiContext;
-import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.HapiContext;
 import ca.uhn.hl7v2.app.HL7Service;
-import ca.uhn.hl7v2.model.Message;
-import ca.uhn.hl7v2.model.v25.message.ADT_A01;
-import ca.uhn.hl7v2.model.v25.message.ADT_A03;
-import ca.uhn.hl7v2.parser.Parser;
-import ca.uhn.hl7v2.protocol.ReceivingApplication;
-import ca.uhn.hl7v2.protocol.ReceivingApplicationException;
+import ca.uhn.hl7v2.llp.LowerLayerProtocol;
+import ca.uhn.hl7v2.llp.MinLowerLayerProtocol;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import ru.platik777.hisserver.service.PatientService;
-
-import java.util.Map;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import ru.platik777.hisserver.hl7.AdtReceivingApplication;
 
 @SpringBootApplication
+@EnableScheduling
 @Slf4j
 public class HisServerApplication {
 
@@ -28,80 +24,27 @@ public class HisServerApplication {
     }
 
     @Bean
-    public CommandLineRunner startHL7Server(PatientService patientService) {
+    public CommandLineRunner startHL7Server(AdtReceivingApplication adtReceivingApplication,
+                                            @Value("${hl7.server.port:2575}") int port,
+                                            @Value("${hl7.charset:UTF-8}") String charset,
+                                            @Value("${hl7.fast-path.enabled:false}") boolean fastPath) {
         return args -> {
-            int port = 2575;
-
+            if (fastPath) {
+                // Порт слушает FastAdtServer
+                return;
+            }
             HapiContext context = new DefaultHapiContext();
+            // Кадры MLLP читаются в той же кодировке, в которой их пишет reception-api
+            LowerLayerProtocol llp = new MinLowerLayerProtocol();
+            llp.setCharset(charset);
+            context.setLowerLayerProtocol(llp);
 
             HL7Service server = context.newServer(port, false);
 
-            server.registerApplication("ADT", "*", new ReceivingApplication<>() {
-                @Override
-                public Message processMessage(Message message, Map<String, Object> metadata)
-                        throws ReceivingApplicationException, HL7Exception {
-
-                    Parser parser = context.getPipeParser();
-                    String encodedMessage = parser.encode(message);
-
-                    try {
-                        String messageType = message.getName();
-
-                        if (messageType.equals("ADT_A01")) {
-                            log.info("=== Получено HL7 сообщение ADT^A01 ===");
-                            log.info("Исходный формат: {}", encodedMessage);
-                            log.info("======================================");
-
-                            ADT_A01 adtMessage = (ADT_A01) message;
-
-                            String patientId = adtMessage.getPID().getPatientIdentifierList(0)
-                                    .getIDNumber().getValue();
-                            String lastName = adtMessage.getPID().getPatientName(0)
-                                    .getFamilyName().getSurname().getValue();
-                            String firstName = adtMessage.getPID().getPatientName(0)
-                                    .getGivenName().getValue();
-                            String dob = adtMessage.getPID().getDateTimeOfBirth()
-                                    .getTime().getValue();
-
-                            patientService.addPatient(Long.parseLong(patientId), firstName, lastName, dob);
-
-                            log.info("Пациент добавлен в HIS: {} {} (ID: {})", firstName, lastName, patientId);
-
-                        } else if (messageType.equals("ADT_A03")) {
-                            log.info("=== Получено HL7 сообщение ADT^A03 ===");
-                            log.info("Исходный формат: {}", encodedMessage);
-                            log.info("======================================");
-
-                            ADT_A03 adtMessage = (ADT_A03) message;
-
-                            String patientId = adtMessage.getPID().getPatientIdentifierList(0).getIDNumber().getValue();
-
-                            patientService.removePatient(Long.parseLong(patientId));
-
-                            log.info("Пациент удалён из HIS (ID: {})", patientId);
-                        }
-
-                    } catch (Exception e) {
-                        log.error("Ошибка обработки HL7 сообщения", e);
-                        throw new ReceivingApplicationException(e);
-                    }
-
-                    try {
-                        return message.generateACK();
-                    } catch (Exception e) {
-                        log.error("Ошибка генерации ACK", e);
-                        throw new RuntimeException(e);
-                    }
-                }
-
-                @Override
-                public boolean canProcess(Message message) {
-                    return true;
-                }
-            });
+            server.registerApplication("ADT", "*", adtReceivingApplication);
 
             server.startAndWait();
             log.info("HL7 Server запущен на порту {}", port);
         };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package ru.platik777.hisserver.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрики именованных потоков для собственных пулов his-server. Пулы HL7 остаются на обычных потоках и при
+ * spring.threads.virtual.enabled=true: в замерах (load-test/virtual-threads.md) виртуальные потоки в HIS
+ * только увеличили задержки.
+ */
+@Component
+public class ThreadFactories {
+
+    public ThreadFactory newFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
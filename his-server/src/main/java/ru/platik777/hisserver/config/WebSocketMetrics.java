@@ -0,0 +1,103 @@
+package ru.platik777.hisserver.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+import ru.platik777.hisserver.service.PatientBroadcastScheduler;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Число STOMP-сессий и подписчиков по каждому топику: websocket.sessions и websocket.subscriptions{destination}.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketMetrics {
+
+    // Прочие адреса сводятся в один тег, чтобы клиент не мог раздуть число метрик
+    private static final Set<String> KNOWN_DESTINATIONS = Set.of(
+            PatientBroadcastScheduler.PATIENTS_TOPIC, PatientBroadcastScheduler.EVENTS_TOPIC);
+
+    private final MeterRegistry meterRegistry;
+
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("websocket.sessions", sessions, Map::size)
+                .description("Открытые STOMP-сессии")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        sessions.putIfAbsent(sessionId(event.getMessage().getHeaders()), new ConcurrentHashMap<>());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getDestination() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = KNOWN_DESTINATIONS.contains(accessor.getDestination())
+                ? accessor.getDestination()
+                : "other";
+
+        Map<String, String> subscriptions = sessions.computeIfAbsent(accessor.getSessionId(),
+                id -> new ConcurrentHashMap<>());
+        if (subscriptions.put(accessor.getSubscriptionId(), destination) == null) {
+            counter(destination).incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessions.get(accessor.getSessionId());
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            counter(destination).decrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(destination -> counter(destination).decrementAndGet());
+        }
+    }
+
+    private AtomicInteger counter(String destination) {
+        return subscribers.computeIfAbsent(destination, d -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("websocket.subscriptions", count, AtomicInteger::get)
+                    .description("Подписчики топика")
+                    .tag("destination", d)
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+
+    private static String sessionId(Map<String, Object> headers) {
+        return (String) headers.get(StompHeaderAccessor.SESSION_ID_HEADER);
+    }
+}
@@ -1,23 +1,114 @@
 package ru.platik777.hisserver.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.platik777.hisserver.entity.Patient;
-import ru.platik777.hisserver.service.PatientService;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import ru.platik777.hisserver.dto.RangeDigest;
+import ru.platik777.hisserver.entity.Patient;
+import ru.platik777.hisserver.service.PatientCensus;
+import ru.platik777.hisserver.service.PatientDigestService;
+import ru.platik777.hisserver.service.PatientExportService;
 
 @RestController
 @RequestMapping("/api/patients")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {PatientController.NEXT_CURSOR_HEADER, PatientController.TOTAL_COUNT_HEADER})
 @RequiredArgsConstructor
 public class PatientController {
 
-    private final PatientService patientService;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private final PatientCensus census;
+    private final PatientExportService patientExportService;
+    private final PatientDigestService patientDigestService;
+
+    @Value("${patients.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${patients.page.max-size:1000}")
+    private int maxPageSize;
 
+    /**
+     * Список и снимок отдаются из PatientCensus готовыми байтами, без обращения к БД.
+     */
     @GetMapping
-    public ResponseEntity<List<Patient>> getAllPatients() {
-        return ResponseEntity.ok(patientService.getAllPatients());
+    public ResponseEntity<byte[]> getAllPatients(@RequestParam(required = false) Long after,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(defaultValue = "false") boolean count) {
+        PatientCensus.Page page = census.page(after, pageSize(limit));
+
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, String.valueOf(page.nextCursor()));
+        }
+        if (count) {
+            headers.set(TOTAL_COUNT_HEADER, String.valueOf(census.size()));
+        }
+
+        return ResponseEntity.ok().headers(headers).contentType(MediaType.APPLICATION_JSON).body(page.json());
+    }
+
+    @GetMapping("/snapshot")
+    public ResponseEntity<byte[]> getSnapshot(@RequestParam(required = false) Long after,
+                                              @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(census.snapshot(after, pageSize(limit)));
+    }
+
+    /**
+     * Сводки для сверки с reception-api: диапазон id [from, to) делится на buckets частей.
+     */
+    @GetMapping("/digest")
+    public ResponseEntity<List<RangeDigest>> getDigest(@RequestParam long from,
+                                                       @RequestParam long to,
+                                                       @RequestParam(defaultValue = "16") int buckets) {
+        try {
+            return ResponseEntity.ok(patientDigestService.digest(from, to, buckets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/digest/rows")
+    public ResponseEntity<List<Patient>> getDigestRows(@RequestParam long from, @RequestParam long to) {
+        try {
+            return ResponseEntity.ok(patientDigestService.rows(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPatients(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        PatientExportService.Format exportFormat;
+        try {
+            exportFormat = PatientExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("patients." + exportFormat.getExtension() + (gzip ? ".gz" : ""))
+                        .build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return response.body(out -> patientExportService.export(exportFormat, gzip, out));
+    }
+
+    private int pageSize(Integer limit) {
+        return limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
     }
 }
@@ -0,0 +1,32 @@
+package ru.platik777.hisserver.dto;
+
+import ru.platik777.hisserver.entity.Patient;
+
+/**
+ * Изменение списка пациентов для UI. correlationId — MSH-10 сообщения, вызвавшего изменение.
+ * В UPDATED до PatientCensus patient содержит только изменённые поля, клиенту уходит полное состояние.
+ */
+public record PatientEvent(long version, Type type, Long patientId, Patient patient, String correlationId) {
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        UPDATED
+    }
+
+    public static PatientEvent added(Patient patient, String correlationId) {
+        return new PatientEvent(0, Type.ADDED, patient.getId(), patient, correlationId);
+    }
+
+    public static PatientEvent removed(Long patientId, String correlationId) {
+        return new PatientEvent(0, Type.REMOVED, patientId, null, correlationId);
+    }
+
+    public static PatientEvent updated(Patient patient, String correlationId) {
+        return new PatientEvent(0, Type.UPDATED, patient.getId(), patient, correlationId);
+    }
+
+    public PatientEvent withVersion(long version) {
+        return new PatientEvent(version, type, patientId, patient, correlationId);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.platik777.hisserver.dto;
+
+/**
+ * Сводка пациентов с id в [from, to): число строк, сумма хэшей строк (16 hex-цифр) и наибольший id.
+ * Тот же формат отдаёт reception-api, сводки сравниваются при сверке.
+ */
+public record RangeDigest(long from, long to, long count, String hash, Long maxId) {}
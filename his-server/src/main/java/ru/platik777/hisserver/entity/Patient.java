@@ -26,6 +26,10 @@ public class Patient {
     @Column(nullable = false)
     private LocalDate dateOfBirth;
 
+    // Отделение из PV1-3, null — не назначено
+    @Column(length = 64)
+    private String ward;
+
     @Column(name = "created_at")
     private LocalDate createdAt;
 }
\ No newline at end of file
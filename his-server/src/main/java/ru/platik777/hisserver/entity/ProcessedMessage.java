@@ -0,0 +1,23 @@
+package ru.platik777.hisserver.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "hl7_processed_messages", indexes = @Index(name = "idx_processed_at", columnList = "processedAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedMessage {
+
+    @Id
+    @Column(length = 64)
+    private String controlId;
+
+    @Column(nullable = false)
+    private Instant processedAt;
+}
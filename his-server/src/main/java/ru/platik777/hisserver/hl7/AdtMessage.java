@@ -0,0 +1,65 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.v25.segment.MSH;
+import ca.uhn.hl7v2.model.v25.segment.PID;
+import ca.uhn.hl7v2.model.v25.segment.PV1;
+
+/**
+ * Поля ADT-сообщения, которые нужны HIS: тип, MSH-10, PID-3, PID-5, PID-7 и отделение из PV1-3.
+ * Тип строится по событию MSH-9.2, а не по структуре: A08 в HL7 2.5 приходит в структуре ADT_A01.
+ * Пустые поля — null; для A08 и A02 это значит «не менять».
+ */
+public record AdtMessage(
+        String messageType,
+        String controlId,
+        Long patientId,
+        String firstName,
+        String lastName,
+        String dateOfBirth,
+        String ward) {
+
+    public static final String ADMISSION = "ADT_A01";
+    public static final String TRANSFER = "ADT_A02";
+    public static final String DISCHARGE = "ADT_A03";
+    public static final String UPDATE = "ADT_A08";
+
+    public static AdtMessage from(Message message) throws HL7Exception {
+        String messageType = typeOf(message);
+        if (!isSupported(messageType)) {
+            throw new HL7Exception("Неподдерживаемый тип сообщения: " + messageType);
+        }
+
+        PID pid = (PID) message.get("PID");
+        String controlId = ((MSH) message.get("MSH")).getMessageControlID().getValue();
+        String patientId = pid.getPatientIdentifierList(0).getIDNumber().getValue();
+
+        return new AdtMessage(
+                messageType,
+                controlId,
+                Long.parseLong(patientId),
+                pid.getPatientName(0).getGivenName().getValue(),
+                pid.getPatientName(0).getFamilyName().getSurname().getValue(),
+                pid.getDateTimeOfBirth().getTime().getValue(),
+                ((PV1) message.get("PV1")).getAssignedPatientLocation().getPointOfCare().getValue());
+    }
+
+    /**
+     * ADT_ и событие из MSH-9.2, например ADT_A08.
+     */
+    public static String typeOf(Message message) throws HL7Exception {
+        MSH msh = (MSH) message.get("MSH");
+        return msh.getMessageType().getMessageCode().getValue() + "_"
+                + msh.getMessageType().getTriggerEvent().getValue();
+    }
+
+    public static boolean isSupported(String messageType) {
+        return ADMISSION.equals(messageType) || DISCHARGE.equals(messageType)
+                || UPDATE.equals(messageType) || TRANSFER.equals(messageType);
+    }
+
+    public boolean isAdmission() {
+        return ADMISSION.equals(messageType);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.protocol.MetadataKeys;
+import ca.uhn.hl7v2.protocol.ReceivingApplication;
+import ca.uhn.hl7v2.protocol.ReceivingApplicationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Принимает ADT-сообщения от HAPI: извлекает нужные поля, передаёт их в конвейер и возвращает ACK,
+ * когда изменение применено.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdtReceivingApplication implements ReceivingApplication<Message> {
+
+    private final HL7ProcessingPipeline pipeline;
+    private final ProcessedMessageCache processedMessageCache;
+    private final MeterRegistry meterRegistry;
+    private final HL7MessageLog messageLog;
+
+    private Timer parseTimer;
+    private Timer ackTimer;
+
+    @PostConstruct
+    public void init() {
+        this.parseTimer = pipeline.stageTimer("parse");
+        this.ackTimer = pipeline.stageTimer("ack");
+    }
+
+    @Override
+    public Message processMessage(Message message, Map<String, Object> metadata)
+            throws ReceivingApplicationException, HL7Exception {
+
+        String messageType = AdtMessage.typeOf(message);
+        if (!AdtMessage.isSupported(messageType)) {
+            return generateAck(message);
+        }
+
+        long started = System.nanoTime();
+        AdtMessage adtMessage;
+        try {
+            adtMessage = AdtMessage.from(message);
+        } catch (Exception e) {
+            log.error("Ошибка обработки HL7 сообщения", e);
+            recordReceive(messageType, (String) metadata.get(MetadataKeys.IN_MESSAGE_CONTROL_ID), null, "error",
+                    started);
+            throw new ReceivingApplicationException(e);
+        }
+        parseTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        try (MDC.MDCCloseable ignored = CorrelationId.put(adtMessage.controlId())) {
+            if (messageLog.samplePayload()) {
+                // HAPI уже держит исходный текст, повторное кодирование не нужно
+                String raw = metadata.get(MetadataKeys.IN_RAW_MESSAGE) instanceof String text ? text : message.encode();
+                messageLog.payload("Сообщение от reception-api", adtMessage.controlId(), () -> raw);
+            }
+            return process(message, adtMessage, started);
+        }
+    }
+
+    private Message process(Message message, AdtMessage adtMessage, long started)
+            throws ReceivingApplicationException {
+        return handle(adtMessage, started, () -> generateAck(message));
+    }
+
+    /**
+     * Общая часть для HAPI и FastAdtServer: дедупликация, применение через конвейер и учёт в hl7.receive.
+     * ack вызывается, когда сообщение применено или оказалось повтором; его время идёт в стадию ack.
+     */
+    public <A> A handle(AdtMessage adtMessage, long started, Supplier<A> ack) throws ReceivingApplicationException {
+        String messageType = adtMessage.messageType();
+
+        if (processedMessageCache.contains(adtMessage.controlId())) {
+            processedMessageCache.recordDuplicate("memory");
+            recordReceive(messageType, adtMessage.controlId(), adtMessage.patientId(), "duplicate", started);
+            return ack.get();
+        }
+
+        boolean applied;
+        try {
+            applied = pipeline.process(adtMessage);
+        } catch (ReceivingApplicationException e) {
+            recordReceive(messageType, adtMessage.controlId(), adtMessage.patientId(), "error", started);
+            throw e;
+        }
+
+        long ackStarted = System.nanoTime();
+        A response = ack.get();
+        ackTimer.record(System.nanoTime() - ackStarted, TimeUnit.NANOSECONDS);
+        recordReceive(messageType, adtMessage.controlId(), adtMessage.patientId(),
+                applied ? "applied" : "duplicate", started);
+        return response;
+    }
+
+    /**
+     * Полное время обработки сообщения в HIS, от разбора до готового ACK: в hl7.receive и строкой в журнал.
+     */
+    private void recordReceive(String messageType, String controlId, Long patientId, String outcome,
+                               long startedNanos) {
+        long nanos = System.nanoTime() - startedNanos;
+        Timer.builder("hl7.receive")
+                .tag("type", messageType)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        messageLog.received(messageType, controlId, patientId, outcome, nanos);
+    }
+
+    private Message generateAck(Message message) {
+        try {
+            return message.generateACK();
+        } catch (Exception e) {
+            log.error("Ошибка генерации ACK", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean canProcess(Message message) {
+        return true;
+    }
+}
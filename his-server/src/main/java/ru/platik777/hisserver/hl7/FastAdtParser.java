@@ -0,0 +1,256 @@
+package ru.platik777.hisserver.hl7;
+
+import java.nio.charset.Charset;
+
+/**
+ * Разбор ADT^A01/A02/A03/A08 прямо из байтов кадра MLLP: находит MSH, PID и PV1, режет нужные поля по разделителям
+ * и декодирует в строки только их. Всё, что выходит за отправляемую reception-api форму — другие
+ * разделители, сегменты не через CR, версия не 2.5, иные типы, escape-последовательности кроме
+ * \F\ \S\ \T\ \R\ \E\, нечисловой PID-3 — возвращает null, и сообщение разбирается HAPI. Кодировка кадра должна совпадать с ASCII
+ * на разделителях (UTF-8, windows-1251 и т.п.).
+ */
+public final class FastAdtParser {
+
+    /**
+     * Поля MSH для ACK хранятся как пришли, в экранированном виде: они копируются в ответ без изменений.
+     *
+     * @param ackHeader MSH-5|MSH-6|MSH-3|MSH-4 — отправитель и получатель для ACK, уже переставленные
+     */
+    public record Parsed(AdtMessage message, String trigger, String rawControlId, String ackHeader) {}
+
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+
+    // MSH-1 — сам разделитель, поэтому номер поля MSH на единицу больше индекса токена
+    private static final int MSH_FIELDS = 12;
+    private static final int PID_FIELDS = 8;
+    private static final int PV1_FIELDS = 3;
+
+    private FastAdtParser() {
+    }
+
+    public static Parsed parse(byte[] data, int length, Charset charset) {
+        try {
+            return parseOrThrow(data, length, charset);
+        } catch (Unsupported e) {
+            return null;
+        }
+    }
+
+    /**
+     * MSH-10 как есть, для отрицательного ACK на сообщение, которое не разобрал и HAPI.
+     */
+    public static String rawControlId(byte[] data, int length, Charset charset) {
+        if (!hasStandardHeader(data, length)) {
+            return "";
+        }
+        int[] fields = new int[(MSH_FIELDS + 1) * 2];
+        int count = split(data, 0, segmentEnd(data, 0, length), fields, MSH_FIELDS);
+        return count > 9 ? raw(data, fields, 9, charset) : "";
+    }
+
+    private static Parsed parseOrThrow(byte[] data, int length, Charset charset) throws Unsupported {
+        if (!hasStandardHeader(data, length)) {
+            throw UNSUPPORTED;
+        }
+
+        int mshEnd = segmentEnd(data, 0, length);
+        int[] msh = new int[(MSH_FIELDS + 1) * 2];
+        if (split(data, 0, mshEnd, msh, MSH_FIELDS) <= 11) {
+            throw UNSUPPORTED;
+        }
+
+        // MSH-9: ADT^A01^ADT_A01
+        int typeStart = msh[16];
+        int typeEnd = msh[17];
+        String code = component(data, typeStart, typeEnd, 1, charset);
+        String trigger = component(data, typeStart, typeEnd, 2, charset);
+        String structure = component(data, typeStart, typeEnd, 3, charset);
+        String messageType;
+        String expectedStructure;
+        if ("A01".equals(trigger)) {
+            messageType = AdtMessage.ADMISSION;
+            expectedStructure = "ADT_A01";
+        } else if ("A03".equals(trigger)) {
+            messageType = AdtMessage.DISCHARGE;
+            expectedStructure = "ADT_A03";
+        } else if ("A08".equals(trigger)) {
+            messageType = AdtMessage.UPDATE;
+            expectedStructure = "ADT_A01";
+        } else if ("A02".equals(trigger)) {
+            messageType = AdtMessage.TRANSFER;
+            expectedStructure = "ADT_A02";
+        } else {
+            throw UNSUPPORTED;
+        }
+        if (!"ADT".equals(code) || structure != null && !structure.equals(expectedStructure)) {
+            throw UNSUPPORTED;
+        }
+        if (!"2.5".equals(component(data, msh[22], msh[23], 1, charset))) {
+            throw UNSUPPORTED;
+        }
+        String controlId = component(data, msh[18], msh[19], 1, charset);
+        if (controlId == null) {
+            throw UNSUPPORTED;
+        }
+
+        int pidStart = findSegment(data, mshEnd, length, 'P', 'I', 'D');
+        if (pidStart < 0) {
+            throw UNSUPPORTED;
+        }
+        int pidEnd = segmentEnd(data, pidStart, length);
+        int[] pid = new int[(PID_FIELDS + 1) * 2];
+        int pidFields = split(data, pidStart, pidEnd, pid, PID_FIELDS);
+        if (pidFields <= 3) {
+            throw UNSUPPORTED;
+        }
+
+        String patientId = component(data, pid[6], pid[7], 1, charset);
+        Long id;
+        try {
+            id = Long.valueOf(patientId);
+        } catch (NumberFormatException e) {
+            throw UNSUPPORTED;
+        }
+
+        String lastName = pidFields > 5 ? component(data, pid[10], pid[11], 1, charset) : null;
+        String firstName = pidFields > 5 ? component(data, pid[10], pid[11], 2, charset) : null;
+        String dateOfBirth = pidFields > 7 ? component(data, pid[14], pid[15], 1, charset) : null;
+
+        String ward = null;
+        int pv1Start = findSegment(data, pidEnd, length, 'P', 'V', '1');
+        if (pv1Start >= 0) {
+            int[] pv1 = new int[(PV1_FIELDS + 1) * 2];
+            if (split(data, pv1Start, segmentEnd(data, pv1Start, length), pv1, PV1_FIELDS) > 3) {
+                ward = component(data, pv1[6], pv1[7], 1, charset);
+            }
+        }
+
+        String ackHeader = raw(data, msh, 4, charset) + '|' + raw(data, msh, 5, charset) + '|'
+                + raw(data, msh, 2, charset) + '|' + raw(data, msh, 3, charset);
+        return new Parsed(new AdtMessage(messageType, controlId, id, firstName, lastName, dateOfBirth, ward),
+                trigger, raw(data, msh, 9, charset), ackHeader);
+    }
+
+    private static boolean hasStandardHeader(byte[] data, int length) {
+        return length > 8 && data[0] == 'M' && data[1] == 'S' && data[2] == 'H' && data[3] == '|'
+                && data[4] == '^' && data[5] == '~' && data[6] == '\\' && data[7] == '&';
+    }
+
+    private static int segmentEnd(byte[] data, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (data[i] == '\r') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static int findSegment(byte[] data, int from, int length, char a, char b, char c) {
+        for (int i = from; i + 3 < length; i++) {
+            if (data[i] == '\r'
+                    && data[i + 1] == a && data[i + 2] == b && data[i + 3] == c
+                    && (i + 4 == length || data[i + 4] == '|')) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Записывает в bounds пары [начало, конец) первых maxField + 1 полей сегмента (нулевое — имя сегмента).
+     *
+     * @return сколько полей найдено
+     */
+    private static int split(byte[] data, int from, int to, int[] bounds, int maxField) {
+        int field = 0;
+        bounds[0] = from;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '|') {
+                bounds[field * 2 + 1] = i;
+                if (field == maxField) {
+                    return field + 1;
+                }
+                field++;
+                bounds[field * 2] = i + 1;
+            }
+        }
+        bounds[field * 2 + 1] = to;
+        return field + 1;
+    }
+
+    private static String raw(byte[] data, int[] bounds, int field, Charset charset) {
+        return new String(data, bounds[field * 2], bounds[field * 2 + 1] - bounds[field * 2], charset);
+    }
+
+    /**
+     * Компонент первого повторения поля, до первого субкомпонента, с раскрытыми escape-последовательностями.
+     * Пустое значение — null, как getValue() у HAPI.
+     */
+    private static String component(byte[] data, int start, int end, int component, Charset charset)
+            throws Unsupported {
+        int from = start;
+        int current = 1;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b == '~') {
+                break;
+            }
+            if (b == '^') {
+                if (current == component) {
+                    break;
+                }
+                current++;
+                from = i + 1;
+            } else if (b == '&' && current == component) {
+                break;
+            }
+        }
+        if (current != component || i == from) {
+            return null;
+        }
+
+        boolean escaped = false;
+        for (int j = from; j < i; j++) {
+            if (data[j] == '\\') {
+                escaped = true;
+                break;
+            }
+        }
+        String value = new String(data, from, i - from, charset);
+        return escaped ? unescape(value) : value;
+    }
+
+    private static String unescape(String value) throws Unsupported {
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i + 2 >= value.length() || value.charAt(i + 2) != '\\') {
+                throw UNSUPPORTED;
+            }
+            switch (value.charAt(i + 1)) {
+                case 'F' -> out.append('|');
+                case 'S' -> out.append('^');
+                case 'T' -> out.append('&');
+                case 'R' -> out.append('~');
+                case 'E' -> out.append('\\');
+                default -> throw UNSUPPORTED;
+            }
+            i += 2;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Сигнал «отдать HAPI»; без стека, создаётся один раз.
+     */
+    private static final class Unsupported extends Exception {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
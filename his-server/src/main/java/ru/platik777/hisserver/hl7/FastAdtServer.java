@@ -0,0 +1,243 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.AcknowledgmentCode;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.v25.segment.MSH;
+import ca.uhn.hl7v2.parser.Parser;
+import ca.uhn.hl7v2.protocol.MetadataKeys;
+import ca.uhn.hl7v2.protocol.ReceivingApplicationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.platik777.hisserver.config.ThreadFactories;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MLLP-приёмник ADT вместо сервера HAPI (hl7.fast-path.enabled=true). ADT^A01/A02/A03/A08 разбирает FastAdtParser
+ * прямо из буфера кадра, ACK собирается строкой. Остальное — другие типы, версии, кодирующие символы —
+ * разбирает PipeParser и обрабатывает AdtReceivingApplication, как при обычном сервере.
+ */
+@Component
+@ConditionalOnProperty(name = "hl7.fast-path.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class FastAdtServer {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss.SSSZ");
+    private static final byte[] HL7_DELIMITERS = "MSH|^~\\&\r".getBytes(StandardCharsets.US_ASCII);
+
+    private final AdtReceivingApplication receivingApplication;
+    private final HL7ProcessingPipeline pipeline;
+    private final ThreadFactories threadFactories;
+    private final MeterRegistry meterRegistry;
+    private final HL7MessageLog messageLog;
+
+    @Value("${hl7.server.port:2575}")
+    private int port;
+
+    @Value("${hl7.charset:UTF-8}")
+    private Charset charset;
+
+    @Value("${hl7.max-frame-bytes:1048576}")
+    private int maxFrameBytes;
+
+    private final AtomicLong ackControlIds = new AtomicLong(System.currentTimeMillis());
+
+    private Parser parser;
+    private Timer parseTimer;
+    private Counter fallbacks;
+    private boolean bytesParsable;
+    private ServerSocket serverSocket;
+    private ExecutorService connectionExecutor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        this.parser = new DefaultHapiContext().getPipeParser();
+        this.parseTimer = pipeline.stageTimer("parse");
+        this.fallbacks = Counter.builder("hl7.fast-path.fallback")
+                .description("Сообщения, переданные на разбор HAPI")
+                .register(meterRegistry);
+
+        // Разделители ищутся в байтах, это верно только для кодировок, совпадающих с ASCII на них
+        this.bytesParsable = Arrays.equals(HL7_DELIMITERS,
+                new String(HL7_DELIMITERS, StandardCharsets.US_ASCII).getBytes(charset));
+        if (!bytesParsable) {
+            log.warn("Кодировка {} несовместима с быстрым разбором HL7, все сообщения разбирает HAPI", charset);
+        }
+
+        this.serverSocket = new ServerSocket(port);
+        this.connectionExecutor = Executors.newCachedThreadPool(threadFactories.newFactory("hl7-fast-"));
+        this.running = true;
+        connectionExecutor.execute(this::acceptLoop);
+
+        log.info("HL7 Server с быстрым разбором ADT запущен на порту {}", port);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Ошибка приёма соединения HL7 Server", e);
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            MllpFrame frame = new MllpFrame(maxFrameBytes);
+            while (frame.read(in)) {
+                MllpFrame.write(out, process(frame).getBytes(charset));
+            }
+        } catch (MllpFrame.FrameTooLargeException e) {
+            log.warn("{} от {}, соединение закрыто", e.getMessage(), socket.getRemoteSocketAddress());
+        } catch (SocketException e) {
+            log.debug("Соединение HL7 Server закрыто: {}", e.getMessage());
+        } catch (IOException e) {
+            log.warn("Ошибка обмена в HL7 Server", e);
+        }
+    }
+
+    private String process(MllpFrame frame) {
+        long started = System.nanoTime();
+        FastAdtParser.Parsed parsed = bytesParsable
+                ? FastAdtParser.parse(frame.buffer(), frame.length(), charset)
+                : null;
+        if (parsed == null) {
+            fallbacks.increment();
+            return processWithHapi(frame);
+        }
+        parseTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        AdtMessage message = parsed.message();
+        try (MDC.MDCCloseable ignored = CorrelationId.put(message.controlId())) {
+            if (messageLog.samplePayload()) {
+                messageLog.payload("Сообщение от reception-api", message.controlId(), () -> frame.decode(charset));
+            }
+            try {
+                return receivingApplication.handle(message, started, () -> ack(parsed, "AA", null));
+            } catch (ReceivingApplicationException e) {
+                log.warn("Сообщение {} не применено: {}", message.controlId(), e.getMessage());
+                return ack(parsed, "AE", String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Тот же путь, что у сервера HAPI: разбор PipeParser, ADT — в AdtReceivingApplication, ошибка — AE.
+     */
+    private String processWithHapi(MllpFrame frame) {
+        String text = frame.decode(charset);
+        Message message;
+        try {
+            message = parser.parse(text);
+        } catch (HL7Exception e) {
+            log.warn("Не удалось разобрать HL7 сообщение: {}", e.getMessage());
+            return errorAck(FastAdtParser.rawControlId(frame.buffer(), frame.length(), charset), e.getMessage());
+        }
+
+        try {
+            String code = ((MSH) message.get("MSH")).getMessageType().getMessageCode().getValue();
+            if (!"ADT".equals(code)) {
+                return parser.encode(message.generateACK(AcknowledgmentCode.AR,
+                        new HL7Exception("Нет приложения для сообщения " + code)));
+            }
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put(MetadataKeys.IN_RAW_MESSAGE, text);
+            try {
+                return parser.encode(receivingApplication.processMessage(message, metadata));
+            } catch (ReceivingApplicationException e) {
+                return parser.encode(message.generateACK(AcknowledgmentCode.AE, new HL7Exception(e)));
+            }
+        } catch (HL7Exception | IOException | ClassCastException e) {
+            log.error("Ошибка обработки HL7 сообщения", e);
+            return errorAck(FastAdtParser.rawControlId(frame.buffer(), frame.length(), charset), e.getMessage());
+        }
+    }
+
+    private String ack(FastAdtParser.Parsed parsed, String ackCode, String error) {
+        StringBuilder ack = new StringBuilder(160)
+                .append("MSH|^~\\&|").append(parsed.ackHeader()).append('|')
+                .append(OffsetDateTime.now().format(TIMESTAMP))
+                .append("||ACK^").append(parsed.trigger()).append("^ACK|")
+                .append(ackControlIds.incrementAndGet()).append("|P|2.5\r")
+                .append("MSA|").append(ackCode).append('|').append(parsed.rawControlId()).append('\r');
+        if (error != null) {
+            appendError(ack, error);
+        }
+        return ack.toString();
+    }
+
+    private String errorAck(String rawControlId, String error) {
+        StringBuilder ack = new StringBuilder(160)
+                .append("MSH|^~\\&|HIS|HOSPITAL|RECEPTION|HOSPITAL|")
+                .append(OffsetDateTime.now().format(TIMESTAMP))
+                .append("||ACK|").append(ackControlIds.incrementAndGet()).append("|P|2.5\r")
+                .append("MSA|AE|").append(rawControlId).append('\r');
+        appendError(ack, String.valueOf(error));
+        return ack.toString();
+    }
+
+    // ERR-3 как у HAPI: 207 — внутренняя ошибка приложения, текст в девятом компоненте
+    private static void appendError(StringBuilder ack, String error) {
+        ack.append("ERR|||207^Application internal error^HL70357^^^^^^");
+        for (int i = 0; i < error.length(); i++) {
+            char c = error.charAt(i);
+            switch (c) {
+                case '|' -> ack.append("\\F\\");
+                case '^' -> ack.append("\\S\\");
+                case '&' -> ack.append("\\T\\");
+                case '~' -> ack.append("\\R\\");
+                case '\\' -> ack.append("\\E\\");
+                case '\r', '\n' -> ack.append(' ');
+                default -> ack.append(c);
+            }
+        }
+        ack.append("|E\r");
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,225 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.parser.Parser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.platik777.hisserver.config.ThreadFactories;
+import ru.platik777.hisserver.service.PatientService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MLLP-приёмник пакетов HL7 (FHS/BHS ... BTS/FTS). Весь пакет применяется одной транзакцией,
+ * в ответ уходит один пакетный ACK.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HL7BatchServer {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final PatientService patientService;
+    private final ThreadFactories threadFactories;
+    private final MeterRegistry meterRegistry;
+    private final HL7MessageLog messageLog;
+
+    @Value("${hl7.batch.port:2576}")
+    private int port;
+
+    @Value("${hl7.batch.max-connections:4}")
+    private int maxConnections;
+
+    @Value("${hl7.charset:UTF-8}")
+    private Charset charset;
+
+    @Value("${hl7.max-frame-bytes:1048576}")
+    private int maxFrameBytes;
+
+    private final AtomicLong ackControlIds = new AtomicLong(System.currentTimeMillis());
+
+    private Parser parser;
+    private ServerSocket serverSocket;
+    private ExecutorService connectionExecutor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        HapiContext context = new DefaultHapiContext();
+        this.parser = context.getPipeParser();
+
+        this.serverSocket = new ServerSocket(port);
+        this.connectionExecutor = Executors.newFixedThreadPool(maxConnections + 1,
+                threadFactories.newFactory("hl7-batch-"));
+        this.running = true;
+        connectionExecutor.execute(this::acceptLoop);
+
+        log.info("HL7 Batch Server запущен на порту {}", port);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Ошибка приёма соединения HL7 Batch Server", e);
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            MllpFrame frame = new MllpFrame(maxFrameBytes);
+            while (frame.read(in)) {
+                MllpFrame.write(out, processBatch(frame.decode(charset)).getBytes(charset));
+            }
+        } catch (MllpFrame.FrameTooLargeException e) {
+            log.warn("{} от {}, соединение закрыто", e.getMessage(), socket.getRemoteSocketAddress());
+        } catch (SocketException e) {
+            log.debug("Соединение HL7 Batch Server закрыто: {}", e.getMessage());
+        } catch (IOException e) {
+            log.warn("Ошибка обмена в HL7 Batch Server", e);
+        }
+    }
+
+    private String processBatch(String payload) {
+        long started = System.nanoTime();
+        String batchControlId = "";
+        int size = 0;
+        try {
+            List<String> segments = splitSegments(payload);
+            batchControlId = batchControlId(segments);
+            MDC.put(CorrelationId.MDC_KEY, batchControlId);
+            if (messageLog.samplePayload()) {
+                messageLog.payload("Пакет от reception-api", batchControlId, () -> payload);
+            }
+
+            List<AdtMessage> messages = new ArrayList<>();
+            for (String encodedMessage : splitMessages(segments)) {
+                messages.add(AdtMessage.from(parser.parse(encodedMessage)));
+            }
+            size = messages.size();
+
+            patientService.applyBatch(messages);
+
+            recordBatch(batchControlId, size, "applied", started);
+            return batchAck(batchControlId, "AA", messages.size() + " сообщений применено");
+        } catch (Exception e) {
+            log.error("Ошибка обработки HL7 пакета {}", batchControlId, e);
+            recordBatch(batchControlId, size, "error", started);
+            return batchAck(batchControlId, "AE", String.valueOf(e.getMessage()));
+        } finally {
+            MDC.remove(CorrelationId.MDC_KEY);
+        }
+    }
+
+    private void recordBatch(String batchControlId, int size, String outcome, long startedNanos) {
+        long nanos = System.nanoTime() - startedNanos;
+        Timer.builder("hl7.receive")
+                .tag("type", "BATCH")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        messageLog.batchReceived(batchControlId, size, outcome, nanos);
+    }
+
+    private static List<String> splitSegments(String payload) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : payload.split("\r")) {
+            if (!segment.isBlank()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private static String batchControlId(List<String> segments) {
+        for (String segment : segments) {
+            if (segment.startsWith("BHS|") || segment.startsWith("FHS|")) {
+                String[] fields = segment.split("\\|", -1);
+                if (fields.length > 10) {
+                    return fields[10];
+                }
+            }
+        }
+        return "";
+    }
+
+    private static List<String> splitMessages(List<String> segments) {
+        List<String> messages = new ArrayList<>();
+        StringBuilder current = null;
+        for (String segment : segments) {
+            if (segment.startsWith("MSH|")) {
+                if (current != null) {
+                    messages.add(current.toString());
+                }
+                current = new StringBuilder(segment).append('\r');
+            } else if (segment.startsWith("FHS|") || segment.startsWith("BHS|")
+                    || segment.startsWith("BTS|") || segment.startsWith("FTS|")) {
+                if (current != null) {
+                    messages.add(current.toString());
+                    current = null;
+                }
+            } else if (current != null) {
+                current.append(segment).append('\r');
+            }
+        }
+        if (current != null) {
+            messages.add(current.toString());
+        }
+        return messages;
+    }
+
+    private String batchAck(String batchControlId, String ackCode, String text) {
+        String timestamp = LocalDateTime.now().format(TIMESTAMP);
+        String controlId = String.valueOf(ackControlIds.incrementAndGet());
+        String header = "|^~\\&|HIS|HOSPITAL|RECEPTION|HOSPITAL|" + timestamp + "||||" + controlId + "|" + batchControlId;
+
+        return "FHS" + header + '\r'
+                + "BHS" + header + '\r'
+                + "MSH|^~\\&|HIS|HOSPITAL|RECEPTION|HOSPITAL|" + timestamp + "||ACK|" + controlId + "|P|2.5" + '\r'
+                + "MSA|" + ackCode + '|' + batchControlId + '|' + text.replace('|', ' ').replace('\r', ' ') + '\r'
+                + "BTS|1" + '\r'
+                + "FTS|1" + '\r';
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+}
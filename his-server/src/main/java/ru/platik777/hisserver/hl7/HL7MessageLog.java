@@ -0,0 +1,77 @@
+package ru.platik777.hisserver.hl7;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Журнал входящих HL7: одна строка на сообщение или пакет — тип, MSH-10, PID-3, исход и время, те же поля
+ * идут парами ключ-значение в структурированный лог. Полный текст HL7 пишется отдельным логгером hl7.payload
+ * и только для выборки hl7.log.payload-sample-rate или при уровне DEBUG.
+ */
+@Component
+@Slf4j
+public class HL7MessageLog {
+
+    private static final Logger payloadLog = LoggerFactory.getLogger("hl7.payload");
+
+    @Value("${hl7.log.payload-sample-rate:0.0}")
+    private double payloadSampleRate;
+
+    /**
+     * Решается один раз на сообщение, до его обработки.
+     */
+    public boolean samplePayload() {
+        if (payloadLog.isDebugEnabled()) {
+            return true;
+        }
+        return payloadSampleRate > 0 && payloadLog.isInfoEnabled()
+                && ThreadLocalRandom.current().nextDouble() < payloadSampleRate;
+    }
+
+    public void payload(String label, String controlId, Supplier<String> payload) {
+        // Сегменты HL7 разделены \r, в файле лога без замены они сливаются в одну строку
+        payloadLog.info("{} {}:\n{}", label, controlId, payload.get().replace('\r', '\n'));
+    }
+
+    public void received(String messageType, String controlId, Long patientId, String outcome, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        log.atInfo()
+                .setMessage("HL7 {} MSH-10 {} PID-3 {} получено: {} за {} мс")
+                .addArgument(messageType)
+                .addArgument(controlId)
+                .addArgument(patientId)
+                .addArgument(outcome)
+                .addArgument(millis)
+                .addKeyValue("hl7.direction", "in")
+                .addKeyValue("hl7.type", messageType)
+                .addKeyValue("hl7.controlId", controlId)
+                .addKeyValue("hl7.patientId", patientId)
+                .addKeyValue("hl7.outcome", outcome)
+                .addKeyValue("hl7.durationMs", millis)
+                .log();
+    }
+
+    public void batchReceived(String batchControlId, int size, String outcome, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        log.atInfo()
+                .setMessage("HL7 пакет {} ({} сообщений) получен: {} за {} мс")
+                .addArgument(batchControlId)
+                .addArgument(size)
+                .addArgument(outcome)
+                .addArgument(millis)
+                .addKeyValue("hl7.direction", "in")
+                .addKeyValue("hl7.type", "BATCH")
+                .addKeyValue("hl7.controlId", batchControlId)
+                .addKeyValue("hl7.batchSize", size)
+                .addKeyValue("hl7.outcome", outcome)
+                .addKeyValue("hl7.durationMs", millis)
+                .log();
+    }
+}
@@ -0,0 +1,169 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.protocol.ReceivingApplicationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.platik777.hisserver.config.ThreadFactories;
+import ru.platik777.hisserver.service.PatientService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Обрабатывает ADT-сообщения на наборе шардов. Шард выбирается по PID-3, поэтому сообщения
+ * одного пациента применяются строго по порядку, а разные пациенты — параллельно.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HL7ProcessingPipeline {
+
+    public enum Backpressure {
+        BLOCK,
+        REJECT
+    }
+
+    private final PatientService patientService;
+    private final MeterRegistry meterRegistry;
+    private final ThreadFactories threadFactories;
+
+    @Value("${hl7.pipeline.shards:0}")
+    private int shardCount;
+
+    @Value("${hl7.pipeline.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${hl7.pipeline.backpressure:BLOCK}")
+    private Backpressure backpressure;
+
+    @Value("${hl7.pipeline.offer-timeout-ms:2000}")
+    private long offerTimeoutMs;
+
+    @Value("${hl7.pipeline.process-timeout-ms:30000}")
+    private long processTimeoutMs;
+
+    private final List<Shard> shards = new ArrayList<>();
+    private Timer queueTimer;
+    private Timer processTimer;
+
+    @PostConstruct
+    public void start() {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+
+        this.queueTimer = stageTimer("queue");
+        this.processTimer = stageTimer("process");
+
+        ThreadFactory shardThreads = threadFactories.newFactory("hl7-shard-");
+        for (int i = 0; i < count; i++) {
+            Shard shard = new Shard(new ArrayBlockingQueue<>(queueCapacity));
+            shardThreads.newThread(shard).start();
+            shards.add(shard);
+
+            meterRegistry.gauge("hl7.pipeline.queue.size", Tags.of("shard", String.valueOf(i)),
+                    shard.queue, BlockingQueue::size);
+        }
+
+        log.info("HL7 конвейер запущен: {} шардов, очередь {} на шард, режим {}", count, queueCapacity, backpressure);
+    }
+
+    public Timer stageTimer(String stage) {
+        return Timer.builder("hl7.pipeline.stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит сообщение в очередь шарда и ждёт его применения. Переполнение очереди и ошибки обработки
+     * превращаются в ReceivingApplicationException — HAPI ответит отрицательным ACK.
+     *
+     * @return false, если сообщение оказалось повтором уже применённого
+     */
+    public boolean process(AdtMessage message) throws ReceivingApplicationException {
+        Task task = new Task(message, System.nanoTime(), new CompletableFuture<>());
+        Shard shard = shards.get(Math.floorMod(Long.hashCode(message.patientId()), shards.size()));
+
+        boolean accepted;
+        try {
+            accepted = backpressure == Backpressure.BLOCK
+                    ? shard.queue.offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)
+                    : shard.queue.offer(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReceivingApplicationException(e);
+        }
+        if (!accepted) {
+            meterRegistry.counter("hl7.pipeline.rejected").increment();
+            throw new ReceivingApplicationException("Очередь обработки HL7 переполнена");
+        }
+
+        try {
+            return task.result.get(processTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new ReceivingApplicationException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ReceivingApplicationException("Сообщение " + message.controlId() + " не обработано за "
+                    + processTimeoutMs + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReceivingApplicationException(e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        shards.forEach(shard -> shard.running = false);
+    }
+
+    private record Task(AdtMessage message, long enqueuedNanos, CompletableFuture<Boolean> result) {}
+
+    private class Shard implements Runnable {
+
+        private final BlockingQueue<Task> queue;
+        private volatile boolean running = true;
+
+        Shard(BlockingQueue<Task> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Task task;
+                try {
+                    task = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == null) {
+                    continue;
+                }
+
+                long started = System.nanoTime();
+                queueTimer.record(started - task.enqueuedNanos(), TimeUnit.NANOSECONDS);
+                try (MDC.MDCCloseable ignored = CorrelationId.put(task.message().controlId())) {
+                    task.result().complete(patientService.apply(task.message()));
+                } catch (Exception e) {
+                    task.result().completeExceptionally(e);
+                } finally {
+                    processTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
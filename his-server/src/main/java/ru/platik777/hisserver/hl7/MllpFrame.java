@@ -0,0 +1,99 @@
+package ru.platik777.hisserver.hl7;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static ca.uhn.hl7v2.llp.MllpConstants.END_BYTE1;
+import static ca.uhn.hl7v2.llp.MllpConstants.END_BYTE2;
+import static ca.uhn.hl7v2.llp.MllpConstants.START_BYTE;
+
+/**
+ * Содержимое одного кадра MLLP (0x0B ... 0x1C 0x0D) без обрамления. Буфер переиспользуется
+ * для всех кадров соединения, поэтому данные действительны до следующего read.
+ */
+final class MllpFrame {
+
+    private final int maxBytes;
+    private byte[] buffer = new byte[4096];
+    private int length;
+
+    MllpFrame(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return false, если соединение закрыто до конца кадра
+     * @throws FrameTooLargeException если кадр длиннее maxBytes; остаток кадра не дочитан,
+     *                                поэтому соединение нужно закрыть
+     */
+    boolean read(InputStream in) throws IOException {
+        length = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                return false;
+            }
+        } while (b != START_BYTE);
+
+        while (true) {
+            b = in.read();
+            if (b == -1) {
+                return false;
+            }
+            if (b == END_BYTE1) {
+                int next = in.read();
+                if (next == END_BYTE2) {
+                    return true;
+                }
+                if (next == -1) {
+                    return false;
+                }
+                append(b);
+                append(next);
+            } else {
+                append(b);
+            }
+        }
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    String decode(Charset charset) {
+        return new String(buffer, 0, length, charset);
+    }
+
+    static void write(OutputStream out, byte[] payload) throws IOException {
+        out.write(START_BYTE);
+        out.write(payload);
+        out.write(END_BYTE1);
+        out.write(END_BYTE2);
+        out.flush();
+    }
+
+    private void append(int b) throws FrameTooLargeException {
+        if (length == maxBytes) {
+            throw new FrameTooLargeException(maxBytes);
+        }
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxBytes));
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    static final class FrameTooLargeException extends IOException {
+
+        FrameTooLargeException(int maxBytes) {
+            super("Кадр MLLP длиннее " + maxBytes + " байт");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.platik777.hisserver.hl7;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.platik777.hisserver.entity.ProcessedMessage;
+import ru.platik777.hisserver.repository.ProcessedMessageRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+/**
+ * Недавно обработанные MSH-10. Память отвечает на повторы без обращения к БД; таблица
+ * hl7_processed_messages переживает рестарт и ловит повторы, вытесненные из памяти.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessedMessageCache {
+
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${hl7.dedup.cache-size:100000}")
+    private int maxSize;
+
+    @Value("${hl7.dedup.retention-minutes:1440}")
+    private long retentionMinutes;
+
+    private Map<String, Long> seen;
+
+    @PostConstruct
+    public void init() {
+        this.seen = new LinkedHashMap<>(1024) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        // Если записей больше maxSize, нужны самые свежие: именно их reception-api повторит после рестарта.
+        // В LRU они кладутся от старых к новым, чтобы первыми вытеснялись старые
+        List<ProcessedMessage> recent = processedMessageRepository.findByProcessedAtAfterOrderByProcessedAtDesc(
+                cutoff(), PageRequest.of(0, maxSize));
+        for (ListIterator<ProcessedMessage> it = recent.listIterator(recent.size()); it.hasPrevious(); ) {
+            ProcessedMessage message = it.previous();
+            seen.put(message.getControlId(), message.getProcessedAt().toEpochMilli());
+        }
+        log.info("Загружено {} недавних MSH-10 для дедупликации", seen.size());
+    }
+
+    public synchronized boolean contains(String controlId) {
+        if (controlId == null) {
+            return false;
+        }
+        Long processedAt = seen.get(controlId);
+        if (processedAt == null) {
+            return false;
+        }
+        if (processedAt < cutoff().toEpochMilli()) {
+            seen.remove(controlId);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void add(String controlId, Instant processedAt) {
+        if (controlId != null) {
+            seen.put(controlId, processedAt.toEpochMilli());
+        }
+    }
+
+    public void recordDuplicate(String source) {
+        meterRegistry.counter("hl7.dedup.duplicates", "source", source).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${hl7.dedup.purge-interval-ms:600000}")
+    public void purge() {
+        Instant cutoff = cutoff();
+
+        synchronized (this) {
+            Iterator<Long> iterator = seen.values().iterator();
+            while (iterator.hasNext() && iterator.next() < cutoff.toEpochMilli()) {
+                iterator.remove();
+            }
+        }
+
+        int removed = processedMessageRepository.deleteOlderThan(cutoff);
+        if (removed > 0) {
+            log.info("Удалено {} устаревших записей дедупликации HL7", removed);
+        }
+    }
+
+    private Instant cutoff() {
+        return Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+    }
+}
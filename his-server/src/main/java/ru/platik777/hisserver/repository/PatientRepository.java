@@ -1,9 +1,86 @@
 package ru.platik777.hisserver.repository;
 
 import ru.platik777.hisserver.entity.Patient;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long> {
+
+    /**
+     * Вставка или обновление пациента одной командой. save() для сущности с заданным id делает SELECT перед
+     * записью; стандартный MERGE поддерживают H2 и PostgreSQL 15+. Приведение типов нужно PostgreSQL, чтобы
+     * вывести типы столбцов VALUES. Параметры именованные — тот же текст идёт в пакетную запись через JDBC.
+     * created_at задаётся только при вставке: повторный A01 не меняет дату создания.
+     */
+    String UPSERT = "merge into patients p"
+            + " using (values (cast(:id as bigint), cast(:firstName as varchar(255)), cast(:lastName as varchar(255)),"
+            + " cast(:dateOfBirth as date), cast(:createdAt as date), cast(:ward as varchar(64))))"
+            + " as s (id, first_name, last_name, date_of_birth, created_at, ward)"
+            + " on p.id = s.id"
+            + " when matched then update set first_name = s.first_name, last_name = s.last_name,"
+            + " date_of_birth = s.date_of_birth, ward = s.ward"
+            + " when not matched then insert (id, first_name, last_name, date_of_birth, created_at, ward)"
+            + " values (s.id, s.first_name, s.last_name, s.date_of_birth, s.created_at, s.ward)";
+
+    String DELETE = "delete from patients where id = :id";
+
+    String COUNT_BY_ID = "select count(*) from patients where id = :id";
+
+    /**
+     * A08: пустой параметр оставляет столбец как есть. Строка, где ничего не меняется, не перезаписывается —
+     * 0 в счётчике значит «нет изменений или нет пациента», и событие не нужно; отсутствие пациента
+     * PatientService проверяет отдельно через COUNT_BY_ID.
+     */
+    String UPDATE = "update patients set"
+            + " first_name = coalesce(cast(:firstName as varchar(255)), first_name),"
+            + " last_name = coalesce(cast(:lastName as varchar(255)), last_name),"
+            + " date_of_birth = coalesce(cast(:dateOfBirth as date), date_of_birth),"
+            + " ward = coalesce(cast(:ward as varchar(64)), ward)"
+            + " where id = :id"
+            + " and (first_name <> coalesce(cast(:firstName as varchar(255)), first_name)"
+            + " or last_name <> coalesce(cast(:lastName as varchar(255)), last_name)"
+            + " or date_of_birth <> coalesce(cast(:dateOfBirth as date), date_of_birth)"
+            + " or ward is distinct from coalesce(cast(:ward as varchar(64)), ward))";
+
+    /**
+     * A02: меняется только отделение, и только если оно другое.
+     */
+    String TRANSFER = "update patients set ward = cast(:ward as varchar(64))"
+            + " where id = :id and ward is distinct from cast(:ward as varchar(64))";
+
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Однопроходный курсор по всей таблице. Требует открытой транзакции на всё время чтения.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAllOrderById();
+
+    /**
+     * Курсор по диапазону id [from, to) для сводок сверки. Требует открытой транзакции.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p where p.id >= :from and p.id < :to order by p.id")
+    Stream<Patient> streamByIdRange(@Param("from") long from, @Param("to") long to);
+
+    List<Patient> findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(Long from, Long to, Limit limit);
 }
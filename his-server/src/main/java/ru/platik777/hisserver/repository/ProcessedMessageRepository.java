@@ -0,0 +1,30 @@
+package ru.platik777.hisserver.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.platik777.hisserver.entity.ProcessedMessage;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, String> {
+
+    String INSERT = "insert into hl7_processed_messages (control_id, processed_at) values (:controlId, :processedAt)";
+
+    @Modifying
+    @Query(value = INSERT, nativeQuery = true)
+    void insert(@Param("controlId") String controlId, @Param("processedAt") Instant processedAt);
+
+    List<ProcessedMessage> findByProcessedAtAfterOrderByProcessedAtDesc(Instant cutoff, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ProcessedMessage m where m.processedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+}
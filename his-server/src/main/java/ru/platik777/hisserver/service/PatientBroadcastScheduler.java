@@ -0,0 +1,170 @@
+package ru.platik777.hisserver.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import ru.platik777.hisserver.dto.PatientEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Копит изменения пациентов в течение окна patients.broadcast.window-ms (или до max-batch событий)
+ * и отправляет их одним сообщением. Payload сериализуется один раз и раздаётся брокером всем подписчикам.
+ * Все отправки идут из одного потока, поэтому версии уходят строго по возрастанию. В том же потоке
+ * изменения применяются к PatientCensus до отправки.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PatientBroadcastScheduler {
+
+    public static final String PATIENTS_TOPIC = "/topic/patients";
+    public static final String EVENTS_TOPIC = "/topic/patients/events";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PatientCensus census;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${patients.broadcast.window-ms:100}")
+    private long windowMs;
+
+    @Value("${patients.broadcast.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${patients.broadcast.full-list:false}")
+    private boolean fullListBroadcast;
+
+    private final Object lock = new Object();
+
+    private List<PatientEvent> pending = new ArrayList<>();
+    private long windowStartedNanos;
+    private boolean flushScheduled;
+
+    private ScheduledExecutorService scheduler;
+    private Counter broadcasts;
+    private DistributionSummary coalescedEvents;
+    private DistributionSummary payloadSize;
+    private Timer broadcastLatency;
+    private Timer broadcastDuration;
+
+    @PostConstruct
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "patients-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.broadcasts = Counter.builder("patients.broadcast.count")
+                .description("Отправленные WebSocket-обновления")
+                .register(meterRegistry);
+        this.coalescedEvents = DistributionSummary.builder("patients.broadcast.coalesced")
+                .description("Изменений в одном обновлении")
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("patients.broadcast.payload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.broadcastLatency = Timer.builder("patients.broadcast.latency")
+                .description("От первого изменения в окне до отправки")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.broadcastDuration = Timer.builder("patients.broadcast.duration")
+                .description("Сериализация и передача обновления брокеру")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void submit(List<PatientEvent> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        boolean flushNow;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                windowStartedNanos = System.nanoTime();
+            }
+            pending.addAll(changes);
+
+            flushNow = pending.size() >= maxBatch;
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        List<PatientEvent> changes;
+        long startedNanos;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            changes = pending;
+            startedNanos = windowStartedNanos;
+            pending = new ArrayList<>();
+        }
+
+        long flushStarted = System.nanoTime();
+        try {
+            List<PatientEvent> events = census.apply(changes);
+            send(EVENTS_TOPIC, objectMapper.writeValueAsBytes(events));
+
+            if (fullListBroadcast) {
+                send(PATIENTS_TOPIC, census.fullList());
+            }
+
+            long now = System.nanoTime();
+            broadcasts.increment();
+            coalescedEvents.record(events.size());
+            broadcastDuration.record(now - flushStarted, TimeUnit.NANOSECONDS);
+            broadcastLatency.record(now - startedNanos, TimeUnit.NANOSECONDS);
+
+            log.info("Отправлено {} изменений списка пациентов через WebSocket (версия {})",
+                    events.size(), census.currentVersion());
+            if (log.isDebugEnabled()) {
+                log.debug("В обновлении версии {} сообщения {}", census.currentVersion(),
+                        events.stream().map(PatientEvent::correlationId).toList());
+            }
+        } catch (Exception e) {
+            log.error("Ошибка отправки обновления пациентов через WebSocket", e);
+        }
+    }
+
+    private void send(String destination, byte[] json) {
+        payloadSize.record(json.length);
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(json, headers.getMessageHeaders()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
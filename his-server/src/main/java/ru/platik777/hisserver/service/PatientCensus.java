@@ -0,0 +1,244 @@
+package ru.platik777.hisserver.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.platik777.hisserver.dto.PatientEvent;
+import ru.platik777.hisserver.entity.Patient;
+import ru.platik777.hisserver.repository.PatientRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Текущий список пациентов в памяти: id -> готовый JSON пациента. Загружается из БД при старте,
+ * дальше меняется только событиями из PatientBroadcastScheduler, поэтому чтения не ходят в БД и ничего
+ * не сериализуют — страница собирается из готовых байтов, полный список кэшируется до следующей версии.
+ * Версия повышается после изменения карты: снимок версии N уже содержит все события до N включительно.
+ * UPDATED накладывается на сохранённое состояние, и клиенту уходит полный пациент.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PatientCensus {
+
+    /**
+     * Страница как готовый JSON. nextCursor передаётся в after для следующей страницы, null — страница последняя.
+     */
+    public record Page(byte[] json, Long nextCursor) {}
+
+    private record FullList(long version, int count, byte[] json) {}
+
+    private static final byte[] EMPTY_LIST = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private final PatientRepository patientRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentSkipListMap<Long, byte[]> patients = new ConcurrentSkipListMap<>();
+    // size() у ConcurrentSkipListMap обходит всю карту
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private final Object fullListLock = new Object();
+
+    private volatile FullList fullList = new FullList(-1, 0, EMPTY_LIST);
+
+    @PostConstruct
+    public void load() {
+        long started = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Patient> stream = patientRepository.streamAllOrderById()) {
+                stream.forEach(patient -> patients.put(patient.getId(), serialize(patient)));
+            }
+        });
+        count.set(patients.size());
+
+        Gauge.builder("patients.census.size", count, AtomicInteger::get)
+                .description("Пациентов в памяти HIS")
+                .register(meterRegistry);
+        log.info("Загружено {} пациентов в память за {} мс", count.get(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Применяет изменения и присваивает им версии. Вызывается только из потока рассылки.
+     */
+    public List<PatientEvent> apply(List<PatientEvent> changes) {
+        long next = version.get();
+        List<PatientEvent> events = new ArrayList<>(changes.size());
+        for (PatientEvent change : changes) {
+            switch (change.type()) {
+                case ADDED -> {
+                    byte[] current = patients.get(change.patientId());
+                    if (current == null) {
+                        count.incrementAndGet();
+                    } else {
+                        // Повторный A01 не меняет дату создания, как и MERGE в таблице
+                        change.patient().setCreatedAt(deserialize(current).getCreatedAt());
+                    }
+                    patients.put(change.patientId(), serialize(change.patient()));
+                }
+                case REMOVED -> {
+                    if (patients.remove(change.patientId()) != null) {
+                        count.decrementAndGet();
+                    }
+                }
+                case UPDATED -> {
+                    byte[] current = patients.get(change.patientId());
+                    if (current == null) {
+                        continue;
+                    }
+                    Patient merged = merge(deserialize(current), change.patient());
+                    patients.put(change.patientId(), serialize(merged));
+                    change = PatientEvent.updated(merged, change.correlationId());
+                }
+            }
+            events.add(change.withVersion(++next));
+        }
+        version.set(next);
+        return events;
+    }
+
+    public long currentVersion() {
+        return version.get();
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Весь список одним массивом JSON. Собирается не чаще одного раза на версию.
+     */
+    public byte[] fullList() {
+        return currentFullList().json();
+    }
+
+    public Page page(Long after, int limit) {
+        if (after == null) {
+            FullList full = currentFullList();
+            if (full.count() <= limit) {
+                return new Page(full.json(), null);
+            }
+        }
+
+        Map<Long, byte[]> tail = after == null ? patients : patients.tailMap(after, false);
+        List<byte[]> selected = new ArrayList<>(Math.min(limit, 1024));
+        Long last = null;
+        boolean hasMore = false;
+        for (Map.Entry<Long, byte[]> entry : tail.entrySet()) {
+            if (selected.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            selected.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page(toArray(selected), hasMore ? last : null);
+    }
+
+    /**
+     * Страница снимка в формате {version, patients, nextCursor}. Версия читается до страницы:
+     * события с большей версией клиент применит поверх, а ADDED/REMOVED/UPDATED идемпотентны.
+     */
+    public byte[] snapshot(Long after, int limit) {
+        long snapshotVersion = version.get();
+        Page page = page(after, limit);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(page.json().length + 64);
+        out.writeBytes(("{\"version\":" + snapshotVersion + ",\"patients\":").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(page.json());
+        out.writeBytes((",\"nextCursor\":" + page.nextCursor() + "}").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private FullList currentFullList() {
+        FullList full = fullList;
+        if (full.version() == version.get()) {
+            return full;
+        }
+        synchronized (fullListLock) {
+            long current = version.get();
+            if (fullList.version() != current) {
+                Collection<byte[]> values = patients.values();
+                List<byte[]> all = new ArrayList<>(values);
+                fullList = new FullList(current, all.size(), toArray(all));
+            }
+            return fullList;
+        }
+    }
+
+    private static byte[] toArray(List<byte[]> items) {
+        if (items.isEmpty()) {
+            return EMPTY_LIST;
+        }
+        int size = items.size() + 1;
+        for (byte[] item : items) {
+            size += item.length;
+        }
+
+        byte[] json = new byte[size];
+        int position = 0;
+        json[position++] = '[';
+        for (byte[] item : items) {
+            if (position > 1) {
+                json[position++] = ',';
+            }
+            System.arraycopy(item, 0, json, position, item.length);
+            position += item.length;
+        }
+        json[position] = ']';
+        return json;
+    }
+
+    /**
+     * Накладывает непустые поля частичного изменения на текущее состояние.
+     */
+    private static Patient merge(Patient current, Patient changes) {
+        if (changes.getFirstName() != null) {
+            current.setFirstName(changes.getFirstName());
+        }
+        if (changes.getLastName() != null) {
+            current.setLastName(changes.getLastName());
+        }
+        if (changes.getDateOfBirth() != null) {
+            current.setDateOfBirth(changes.getDateOfBirth());
+        }
+        if (changes.getWard() != null) {
+            current.setWard(changes.getWard());
+        }
+        return current;
+    }
+
+    private Patient deserialize(byte[] json) {
+        try {
+            return objectMapper.readValue(json, Patient.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] serialize(Patient patient) {
+        try {
+            return objectMapper.writeValueAsBytes(patient);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.platik777.hisserver.service;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.platik777.hisserver.dto.RangeDigest;
+import ru.platik777.hisserver.entity.Patient;
+import ru.platik777.hisserver.repository.PatientRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Сводки по диапазонам id для сверки с reception-api. Диапазон [from, to) делится на равные по ширине
+ * части, для каждой — число строк и сумма 64-битных хэшей строк: сумма не зависит от порядка, и совпадение
+ * сводок с высокой вероятностью означает совпадение содержимого. Хэш и деление на части должны совпадать
+ * с PatientDigestService в reception-api.
+ */
+@Service
+@RequiredArgsConstructor
+public class PatientDigestService {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static final int MAX_BUCKETS = 256;
+
+    private final PatientRepository patientRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${reconciliation.max-rows:1000}")
+    private int maxRows;
+
+    public List<RangeDigest> digest(long from, long to, int buckets) {
+        if (from < 0 || from >= to || buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Неверный диапазон сводки: [" + from + ", " + to + "), " + buckets);
+        }
+        long step = step(from, to, buckets);
+        int parts = (int) ((to - from - 1) / step + 1);
+        long[] counts = new long[parts];
+        long[] hashes = new long[parts];
+        Long[] maxIds = new Long[parts];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Patient> patients = patientRepository.streamByIdRange(from, to)) {
+                patients.forEach(patient -> {
+                    int part = (int) ((patient.getId() - from) / step);
+                    counts[part]++;
+                    hashes[part] += rowHash(patient);
+                    maxIds[part] = patient.getId();
+                    entityManager.detach(patient);
+                });
+            }
+        });
+
+        List<RangeDigest> digests = new ArrayList<>(parts);
+        for (int part = 0; part < parts; part++) {
+            long lower = from + part * step;
+            long upper = to - lower <= step ? to : lower + step;
+            digests.add(new RangeDigest(lower, upper, counts[part], String.format("%016x", hashes[part]),
+                    maxIds[part]));
+        }
+        return digests;
+    }
+
+    /**
+     * Сами строки диапазона — для нижнего уровня сверки, где сводка уже не сужает расхождение.
+     */
+    public List<Patient> rows(long from, long to) {
+        if (from < 0 || from >= to) {
+            throw new IllegalArgumentException("Неверный диапазон: [" + from + ", " + to + ")");
+        }
+        List<Patient> patients = patientRepository.findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(
+                from, to, Limit.of(maxRows + 1));
+        if (patients.size() > maxRows) {
+            throw new IllegalArgumentException("В диапазоне [" + from + ", " + to + ") больше " + maxRows + " строк");
+        }
+        return patients;
+    }
+
+    static long rowHash(Patient patient) {
+        return rowHash(patient.getId(), patient.getFirstName(), patient.getLastName(), patient.getDateOfBirth(),
+                patient.getWard());
+    }
+
+    /**
+     * Ширина части: ceil((to - from) / buckets), не меньше 1.
+     */
+    static long step(long from, long to, int buckets) {
+        long width = to - from;
+        return Math.max(1, width / buckets + (width % buckets == 0 ? 0 : 1));
+    }
+
+    /**
+     * FNV-1a по полям, которые передаются в HL7 (createdAt у систем свой), с перемешиванием fmix64.
+     * Пустая строка и null не различаются: в HL7 пустое поле приходит как null.
+     */
+    static long rowHash(long id, String firstName, String lastName, LocalDate dateOfBirth, String ward) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = field(hash, Long.toString(id));
+        hash = field(hash, firstName);
+        hash = field(hash, lastName);
+        hash = field(hash, dateOfBirth == null ? null : dateOfBirth.toString());
+        hash = field(hash, ward);
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long field(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        // Разделитель полей, чтобы «аб|в» и «а|бв» давали разный хэш
+        hash ^= 0x1f;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+}
@@ -1,52 +1,278 @@
 package ru.platik777.hisserver.service;
 
+import ru.platik777.hisserver.dto.PatientEvent;
 import ru.platik777.hisserver.entity.Patient;
+import ru.platik777.hisserver.hl7.AdtMessage;
+import ru.platik777.hisserver.hl7.ProcessedMessageCache;
 import ru.platik777.hisserver.repository.PatientRepository;
+import ru.platik777.hisserver.repository.ProcessedMessageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PatientService {
 
-    private final PatientRepository patientRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private static final DateTimeFormatter DATE_OF_BIRTH = DateTimeFormatter.ofPattern("yyyyMMdd");
 
-    public void addPatient(Long id, String firstName, String lastName, String dobString) {
-        LocalDate dob = LocalDate.parse(dobString, DateTimeFormatter.ofPattern("yyyyMMdd"));
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final ProcessedMessageCache processedMessageCache;
+    private final PatientBroadcastScheduler broadcastScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
 
-        Patient patient = new Patient();
-        patient.setId(id);
-        patient.setFirstName(firstName);
-        patient.setLastName(lastName);
-        patient.setDateOfBirth(dob);
-        patient.setCreatedAt(LocalDate.now());
+    /**
+     * Применяет сообщение вместе с записью его MSH-10 в одной транзакции.
+     *
+     * @return false, если сообщение с таким MSH-10 уже было применено
+     */
+    public boolean apply(AdtMessage message) {
+        if (processedMessageCache.contains(message.controlId())) {
+            processedMessageCache.recordDuplicate("memory");
+            return false;
+        }
+
+        Instant processedAt = Instant.now();
+        List<PatientEvent> changes = new ArrayList<>(1);
+
+        Boolean applied = transactionTemplate.execute(status -> {
+            if (message.controlId() != null) {
+                try {
+                    processedMessageRepository.insert(message.controlId(), processedAt);
+                } catch (DataIntegrityViolationException e) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            PatientEvent change = write(message);
+            if (change != null) {
+                changes.add(change);
+            }
+            return true;
+        });
+
+        if (!Boolean.TRUE.equals(applied)) {
+            processedMessageCache.add(message.controlId(), processedAt);
+            processedMessageCache.recordDuplicate("db");
+            return false;
+        }
+
+        processedMessageCache.add(message.controlId(), processedAt);
+        broadcastScheduler.submit(changes);
+        return true;
+    }
+
+    public void applyBatch(List<AdtMessage> messages) {
+        Set<String> known = new HashSet<>();
+        List<String> controlIds = new ArrayList<>(messages.size());
+        for (AdtMessage message : messages) {
+            if (message.controlId() == null) {
+                continue;
+            }
+            if (processedMessageCache.contains(message.controlId())) {
+                known.add(message.controlId());
+            } else {
+                controlIds.add(message.controlId());
+            }
+        }
+        processedMessageRepository.findAllById(controlIds)
+                .forEach(processed -> known.add(processed.getControlId()));
+
+        Instant processedAt = Instant.now();
+        List<PatientEvent> changes = new ArrayList<>(messages.size());
+        List<String> applied = new ArrayList<>(messages.size());
+
+        List<AdtMessage> fresh = new ArrayList<>(messages.size());
+        for (AdtMessage message : messages) {
+            if (message.controlId() == null || known.add(message.controlId())) {
+                fresh.add(message);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<SqlParameterSource> processed = new ArrayList<>(fresh.size());
+            for (AdtMessage message : fresh) {
+                if (message.controlId() != null) {
+                    processed.add(new MapSqlParameterSource()
+                            .addValue("controlId", message.controlId())
+                            .addValue("processedAt", Timestamp.from(processedAt)));
+                    applied.add(message.controlId());
+                }
+            }
+            if (!processed.isEmpty()) {
+                jdbcTemplate.batchUpdate(ProcessedMessageRepository.INSERT,
+                        processed.toArray(SqlParameterSource[]::new));
+            }
+            changes.addAll(writeAll(fresh));
+        });
+
+        applied.forEach(controlId -> processedMessageCache.add(controlId, processedAt));
+        if (fresh.size() < messages.size()) {
+            log.info("Пропущено {} повторных сообщений в HL7 пакете", messages.size() - fresh.size());
+        }
+
+        broadcastScheduler.submit(changes);
+    }
 
-        patientRepository.save(patient);
+    /**
+     * SQL, параметры и событие для одного сообщения. Событие уходит, только если запись изменила строку.
+     */
+    private record Change(AdtMessage message, String sql, SqlParameterSource parameters, PatientEvent event) {}
 
-        broadcastPatients();
+    private PatientEvent write(AdtMessage message) {
+        Change change = change(message);
+        if (jdbcTemplate.update(change.sql(), change.parameters()) != 0) {
+            return change.event();
+        }
+        requireKnownPatient(message);
+        return null;
     }
 
-    public void removePatient(Long id) {
-        patientRepository.deleteById(id);
+    /**
+     * 0 строк у A08 и A02 — либо изменений нет, либо такого пациента в HIS нет. Во втором случае сообщение
+     * не применяется: транзакция откатывается вместе с MSH-10, HIS отвечает AE, и reception-api повторит
+     * сообщение позже или отложит его.
+     */
+    private void requireKnownPatient(AdtMessage message) {
+        if (!AdtMessage.UPDATE.equals(message.messageType()) && !AdtMessage.TRANSFER.equals(message.messageType())) {
+            return;
+        }
+        Integer count = jdbcTemplate.queryForObject(PatientRepository.COUNT_BY_ID,
+                new MapSqlParameterSource("id", message.patientId()), Integer.class);
+        if (count == null || count == 0) {
+            throw new UnknownPatientException("Пациент " + message.patientId() + " из сообщения "
+                    + message.controlId() + " не найден в HIS");
+        }
+    }
+
+    /**
+     * Пакетная запись через JDBC batch. Подряд идущие сообщения одного типа собираются в отдельные пачки,
+     * порядок сообщений сохраняется: повторное поступление после выписки в том же пакете не превращается
+     * в удаление.
+     */
+    private List<PatientEvent> writeAll(List<AdtMessage> messages) {
+        List<PatientEvent> events = new ArrayList<>(messages.size());
+        List<Change> run = new ArrayList<>();
+        String runType = null;
+
+        for (AdtMessage message : messages) {
+            if (!message.messageType().equals(runType)) {
+                flush(run, events);
+                runType = message.messageType();
+            }
+            run.add(change(message));
+        }
+        flush(run, events);
+        return events;
+    }
+
+    private void flush(List<Change> run, List<PatientEvent> events) {
+        if (run.isEmpty()) {
+            return;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(run.get(0).sql(),
+                run.stream().map(Change::parameters).toArray(SqlParameterSource[]::new));
+        for (int i = 0; i < counts.length; i++) {
+            // SUCCESS_NO_INFO (-2) — драйвер не сообщил число строк, считаем изменением
+            if (counts[i] != 0) {
+                events.add(run.get(i).event());
+            } else {
+                requireKnownPatient(run.get(i).message());
+            }
+        }
+        run.clear();
+    }
+
+    private static Change change(AdtMessage message) {
+        return switch (message.messageType()) {
+            case AdtMessage.ADMISSION -> {
+                Patient patient = toPatient(message.patientId(), message.firstName(), message.lastName(),
+                        message.dateOfBirth());
+                patient.setWard(message.ward());
+                yield new Change(message, PatientRepository.UPSERT, upsertParameters(patient),
+                        PatientEvent.added(patient, message.controlId()));
+            }
+            case AdtMessage.UPDATE -> {
+                Patient changes = partialPatient(message);
+                yield new Change(message, PatientRepository.UPDATE, updateParameters(changes),
+                        PatientEvent.updated(changes, message.controlId()));
+            }
+            case AdtMessage.TRANSFER -> {
+                Patient changes = new Patient();
+                changes.setId(message.patientId());
+                changes.setWard(message.ward());
+                yield new Change(message, PatientRepository.TRANSFER, new MapSqlParameterSource()
+                        .addValue("id", message.patientId())
+                        .addValue("ward", message.ward(), Types.VARCHAR),
+                        PatientEvent.updated(changes, message.controlId()));
+            }
+            default -> new Change(message, PatientRepository.DELETE,
+                    new MapSqlParameterSource("id", message.patientId()),
+                    PatientEvent.removed(message.patientId(), message.controlId()));
+        };
+    }
+
+    private static SqlParameterSource upsertParameters(Patient patient) {
+        return new MapSqlParameterSource()
+                .addValue("id", patient.getId())
+                .addValue("firstName", patient.getFirstName())
+                .addValue("lastName", patient.getLastName())
+                .addValue("dateOfBirth", patient.getDateOfBirth())
+                .addValue("createdAt", patient.getCreatedAt())
+                .addValue("ward", patient.getWard(), Types.VARCHAR);
+    }
 
-        broadcastPatients();
+    // Типы заданы явно: null без типа драйвер PostgreSQL не сопоставит с cast
+    private static SqlParameterSource updateParameters(Patient changes) {
+        return new MapSqlParameterSource()
+                .addValue("id", changes.getId())
+                .addValue("firstName", changes.getFirstName(), Types.VARCHAR)
+                .addValue("lastName", changes.getLastName(), Types.VARCHAR)
+                .addValue("dateOfBirth", changes.getDateOfBirth(), Types.DATE)
+                .addValue("ward", changes.getWard(), Types.VARCHAR);
     }
 
-    public List<Patient> getAllPatients() {
-        return patientRepository.findAll();
+    /**
+     * Только поля, пришедшие в A08; остальные null.
+     */
+    private static Patient partialPatient(AdtMessage message) {
+        Patient patient = new Patient();
+        patient.setId(message.patientId());
+        patient.setFirstName(message.firstName());
+        patient.setLastName(message.lastName());
+        if (message.dateOfBirth() != null) {
+            patient.setDateOfBirth(LocalDate.parse(message.dateOfBirth(), DATE_OF_BIRTH));
+        }
+        patient.setWard(message.ward());
+        return patient;
     }
 
-    private void broadcastPatients() {
-        List<Patient> patients = getAllPatients();
-        messagingTemplate.convertAndSend("/topic/patients", patients);
-        log.info("Отправлено обновление списка пациентов через WebSocket ({} пациентов)", patients.size());
+    private static Patient toPatient(Long id, String firstName, String lastName, String dobString) {
+        LocalDate dob = LocalDate.parse(dobString, DATE_OF_BIRTH);
+
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        patient.setDateOfBirth(dob);
+        patient.setCreatedAt(LocalDate.now());
+        return patient;
     }
 }
@@ -0,0 +1,8 @@
+package ru.platik777.hisserver.service;
+
+public class UnknownPatientException extends RuntimeException {
+
+    public UnknownPatientException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+-- Схема his-server. id пациента приходит из PID-3.
+
+create table patients (
+    id            bigint       not null primary key,
+    first_name    varchar(255) not null,
+    last_name     varchar(255) not null,
+    date_of_birth date         not null,
+    created_at    date
+);
+
+create table hl7_processed_messages (
+    control_id   varchar(64)                 not null primary key,
+    processed_at timestamp(6) with time zone not null
+);
+
+create index idx_processed_at on hl7_processed_messages (processed_at);
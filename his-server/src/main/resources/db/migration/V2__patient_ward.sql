@@ -0,0 +1,3 @@
+-- Отделение пациента из PV1-3: приходит в A01/A08, меняется переводом ADT^A02.
+
+alter table patients add column ward varchar(64);
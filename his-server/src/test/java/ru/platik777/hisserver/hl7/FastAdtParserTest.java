@@ -0,0 +1,198 @@
+package ru.platik777.hisserver.hl7;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.parser.Parser;
+import org.junit.jupiter.api.Test;
+import ru.platik777.hisserver.hl7.FastAdtParser.Parsed;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * FastAdtParser против PipeParser и AdtMessage.from: на всём, что быстрый разбор принимает, поля должны
+ * совпадать, остальное — уходить в HAPI (parse возвращает null).
+ */
+class FastAdtParserTest {
+
+    private static final String MSH = "MSH|^~\\&|RECEPTION|HOSPITAL|HIS|HOSPITAL|20261017093005.123+0300||";
+    private static final String EVN = "EVN||20261017093005";
+
+    private final Parser parser = new DefaultHapiContext().getPipeParser();
+
+    @Test
+    void admissionMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203",
+                "PV1||I|Кардиология"));
+
+        assertThat(parsed.message()).isEqualTo(new AdtMessage(AdtMessage.ADMISSION, "C1", 4217L, "Иван", "Петров",
+                "19800203", "Кардиология"));
+        assertThat(parsed.trigger()).isEqualTo("A01");
+        assertThat(parsed.rawControlId()).isEqualTo("C1");
+        assertThat(parsed.ackHeader()).isEqualTo("HIS|HOSPITAL|RECEPTION|HOSPITAL");
+    }
+
+    @Test
+    void admissionWithoutVisitMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203"));
+
+        assertThat(parsed.message().ward()).isNull();
+    }
+
+    @Test
+    void dischargeMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A03^ADT_A03", "PID|||4217||Петров^Иван||19800203",
+                "PV1||I|Терапия"));
+
+        assertThat(parsed.message().messageType()).isEqualTo(AdtMessage.DISCHARGE);
+    }
+
+    @Test
+    void updateInAdtA01StructureMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A08^ADT_A01", "PID|||4217||Сидорова^Анна||19850101",
+                "PV1||I|Хирургия"));
+
+        assertThat(parsed.message().messageType()).isEqualTo(AdtMessage.UPDATE);
+        assertThat(parsed.trigger()).isEqualTo("A08");
+    }
+
+    @Test
+    void transferMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A02^ADT_A02", "PID|||4217||Сидорова^Анна||19850101",
+                "PV1||I|Неврология"));
+
+        assertThat(parsed.message().messageType()).isEqualTo(AdtMessage.TRANSFER);
+        assertThat(parsed.message().ward()).isEqualTo("Неврология");
+    }
+
+    @Test
+    void transferWithoutWardMatchesHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A02^ADT_A02", "PID|||4217||Сидорова^Анна||19850101",
+                "PV1||I"));
+
+        assertThat(parsed.message().ward()).isNull();
+    }
+
+    @Test
+    void escapedDelimitersMatchHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A01^ADT_A01",
+                "PID|||4217||Пет\\R\\ров\\E\\\\T\\Ко^Ив\\F\\ан\\S\\||19800203", "PV1||I|Отд\\T\\1"));
+
+        assertThat(parsed.message().lastName()).isEqualTo("Пет~ров\\&Ко");
+        assertThat(parsed.message().firstName()).isEqualTo("Ив|ан^");
+        assertThat(parsed.message().ward()).isEqualTo("Отд&1");
+    }
+
+    @Test
+    void missingFieldsAreNullLikeHapi() throws Exception {
+        assertSameAsHapi(message("ADT^A08^ADT_A01", "PID|||4217||^Анна"));
+        assertSameAsHapi(message("ADT^A08^ADT_A01", "PID|||4217||Сидорова"));
+        assertSameAsHapi(message("ADT^A08^ADT_A01", "PID|||4217||||19850101"));
+        Parsed parsed = assertSameAsHapi(message("ADT^A08^ADT_A01", "PID|||4217"));
+
+        assertThat(parsed.message()).isEqualTo(new AdtMessage(AdtMessage.UPDATE, "C1", 4217L, null, null, null, null));
+    }
+
+    @Test
+    void missingStructureIsAccepted() throws Exception {
+        assertSameAsHapi(message("ADT^A01", "PID|||4217||Петров^Иван||19800203"));
+    }
+
+    @Test
+    void firstRepetitionAndComponentAreUsedLikeHapi() throws Exception {
+        Parsed parsed = assertSameAsHapi(message("ADT^A01^ADT_A01",
+                "PID|||4217^^^HOSP~9999||Петров&Пре^Иван^Ильич~Petrov^Ivan||19800203",
+                "PV1||I|Кардиология^101^2~Терапия"));
+
+        assertThat(parsed.message().patientId()).isEqualTo(4217L);
+        assertThat(parsed.message().lastName()).isEqualTo("Петров");
+        assertThat(parsed.message().firstName()).isEqualTo("Иван");
+        assertThat(parsed.message().ward()).isEqualTo("Кардиология");
+    }
+
+    @Test
+    void newlineSegmentSeparatorsFallBackToHapi() {
+        assertThat(fastParse(message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203")
+                .replace('\r', '\n'))).isNull();
+    }
+
+    @Test
+    void windows1251FrameIsDecoded() {
+        Charset windows1251 = Charset.forName("windows-1251");
+        byte[] frame = message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203").getBytes(windows1251);
+
+        Parsed parsed = FastAdtParser.parse(frame, frame.length, windows1251);
+
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.message().lastName()).isEqualTo("Петров");
+    }
+
+    @Test
+    void hexEscapeFallsBackToHapi() throws Exception {
+        String text = message("ADT^A01^ADT_A01", "PID|||4217||Петров^Ив\\X000d\\ан||19800203");
+
+        assertThat(fastParse(text)).isNull();
+        assertThat(AdtMessage.from(parser.parse(text)).firstName()).isEqualTo("Ив\rан");
+    }
+
+    @Test
+    void otherVersionFallsBackToHapi() {
+        String text = message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203").replace("|P|2.5", "|P|2.4");
+
+        assertThat(fastParse(text)).isNull();
+    }
+
+    @Test
+    void nonNumericPatientIdFallsBackToHapi() {
+        assertThat(fastParse(message("ADT^A01^ADT_A01", "PID|||MRN-1||Петров^Иван||19800203"))).isNull();
+    }
+
+    @Test
+    void unsupportedTypeOrStructureFallsBackToHapi() {
+        assertThat(fastParse(message("ADT^A04^ADT_A01", "PID|||4217||Петров^Иван||19800203"))).isNull();
+        assertThat(fastParse(message("ADT^A08^ADT_A08", "PID|||4217||Петров^Иван||19800203"))).isNull();
+        assertThat(fastParse(message("ORU^R01^ORU_R01", "PID|||4217||Петров^Иван||19800203"))).isNull();
+    }
+
+    @Test
+    void otherEncodingCharactersFallBackToHapi() {
+        String text = message("ADT^A01^ADT_A01", "PID|||4217||Петров^Иван||19800203").replace("^~\\&", "^~\\#");
+
+        assertThat(fastParse(text)).isNull();
+    }
+
+    @Test
+    void missingPidFallsBackToHapi() {
+        assertThat(fastParse(message("ADT^A01^ADT_A01", "PV1||I|Кардиология"))).isNull();
+    }
+
+    @Test
+    void rawControlIdIsReadWithoutParsing() {
+        byte[] frame = message("ADT^A04^ADT_A01", "PID|||MRN-1").getBytes(StandardCharsets.UTF_8);
+
+        assertThat(FastAdtParser.rawControlId(frame, frame.length, StandardCharsets.UTF_8)).isEqualTo("C1");
+        assertThat(FastAdtParser.rawControlId(new byte[] {'X'}, 1, StandardCharsets.UTF_8)).isEmpty();
+    }
+
+    private Parsed assertSameAsHapi(String text) throws Exception {
+        Parsed parsed = fastParse(text);
+
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.message()).isEqualTo(AdtMessage.from(parser.parse(text)));
+        return parsed;
+    }
+
+    private static Parsed fastParse(String text) {
+        byte[] frame = text.getBytes(StandardCharsets.UTF_8);
+        return FastAdtParser.parse(frame, frame.length, StandardCharsets.UTF_8);
+    }
+
+    private static String message(String msh9, String... segments) {
+        StringBuilder text = new StringBuilder(MSH).append(msh9).append("|C1|P|2.5\r").append(EVN).append('\r');
+        for (String segment : segments) {
+            text.append(segment).append('\r');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.platik777.hisserver.hl7;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MllpFrameTest {
+
+    @Test
+    void readsConsecutiveFrames() throws IOException {
+        InputStream in = framed("MSH|1\r", "MSH|2\r");
+        MllpFrame frame = new MllpFrame(64);
+
+        assertThat(frame.read(in)).isTrue();
+        assertThat(frame.decode(StandardCharsets.UTF_8)).isEqualTo("MSH|1\r");
+        assertThat(frame.read(in)).isTrue();
+        assertThat(frame.decode(StandardCharsets.UTF_8)).isEqualTo("MSH|2\r");
+        assertThat(frame.read(in)).isFalse();
+    }
+
+    @Test
+    void acceptsFrameOfExactlyMaxBytes() throws IOException {
+        String payload = "x".repeat(5000);
+        MllpFrame frame = new MllpFrame(5000);
+
+        assertThat(frame.read(framed(payload))).isTrue();
+        assertThat(frame.length()).isEqualTo(5000);
+    }
+
+    @Test
+    void rejectsFrameLongerThanMaxBytes() {
+        MllpFrame frame = new MllpFrame(5000);
+
+        assertThatThrownBy(() -> frame.read(framed("x".repeat(5001))))
+                .isInstanceOf(MllpFrame.FrameTooLargeException.class);
+    }
+
+    private static InputStream framed(String... payloads) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String payload : payloads) {
+            MllpFrame.write(out, payload.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
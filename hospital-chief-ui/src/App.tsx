@@ -1,4 +1,4 @@
-import { useState, useEffect } from 'react';
+import { useState, useEffect, useRef } from 'react';
 import { Client, StompSubscription } from '@stomp/stompjs';
 
 interface Patient {
@@ -7,30 +7,117 @@ interface Patient {
     lastName: string;
     dateOfBirth: string;
     createdAt: string;
+    // Отделение (PV1-3), меняется переводом ADT^A02
+    ward: string | null;
 }
 
+interface PatientEvent {
+    version: number;
+    // UPDATED несёт полное новое состояние пациента
+    type: 'ADDED' | 'REMOVED' | 'UPDATED';
+    patientId: number;
+    patient: Patient | null;
+    // MSH-10 HL7 сообщения, вызвавшего изменение
+    correlationId: string | null;
+}
+
+interface PatientSnapshot {
+    version: number;
+    patients: Patient[];
+    nextCursor: number | null;
+}
+
+const SNAPSHOT_PAGE_SIZE = 1000;
+
+// Пакет событий применяется к Map по id за один проход, список сортируется один раз на пакет
+const applyBatch = (patients: Patient[], events: PatientEvent[]): Patient[] => {
+    const byId = new Map<number, Patient>(patients.map(p => [p.id, p]));
+    for (const event of events) {
+        if ((event.type === 'ADDED' || event.type === 'UPDATED') && event.patient) {
+            byId.set(event.patientId, event.patient);
+        } else {
+            byId.delete(event.patientId);
+        }
+    }
+    // Map сохраняет порядок вставки: прежние пациенты уже по id, новые в хвосте — сортировка почти линейна
+    return Array.from(byId.values()).sort((a, b) => a.id - b.id);
+};
+
 export default function HospitalChiefUI() {
     const [patients, setPatients] = useState<Patient[]>([]);
     const [connected, setConnected] = useState(false);
     const [lastUpdate, setLastUpdate] = useState<Date | null>(null);
 
+    // null — снимок ещё не загружен, события копятся в pendingEvents
+    const versionRef = useRef<number | null>(null);
+    const pendingEvents = useRef<PatientEvent[]>([]);
+
+    const applyEvents = (events: PatientEvent[]) => {
+        if (versionRef.current === null) {
+            pendingEvents.current.push(...events);
+            return;
+        }
+
+        let version = versionRef.current;
+        const fresh: PatientEvent[] = [];
+        for (const event of events) {
+            if (event.version <= version) {
+                continue;
+            }
+            if (event.version !== version + 1) {
+                console.warn(`Пропущены версии ${version + 1}..${event.version - 1}, перезагрузка снимка`);
+                loadCurrentPatients();
+                return;
+            }
+            fresh.push(event);
+            version = event.version;
+        }
+
+        versionRef.current = version;
+        if (fresh.length > 0) {
+            setPatients(current => applyBatch(current, fresh));
+            setLastUpdate(new Date());
+        }
+    };
+
     const loadCurrentPatients = async () => {
+        versionRef.current = null;
         try {
-            const response = await fetch('https://localhost:8081/api/patients');
-            if (response.ok) {
-                const data = await response.json();
-                setPatients(data);
-                setLastUpdate(new Date());
-                console.log('Загружен текущий список пациентов:', data);
-            }
+            // Версия берётся с первой страницы: события после неё применятся поверх всех страниц
+            let version: number | null = null;
+            let cursor: number | null = null;
+            const loaded: Patient[] = [];
+            do {
+                const params = new URLSearchParams({ limit: String(SNAPSHOT_PAGE_SIZE) });
+                if (cursor !== null) {
+                    params.set('after', String(cursor));
+                }
+                const response = await fetch(`https://localhost:8081/api/patients/snapshot?${params}`);
+                if (!response.ok) {
+                    return;
+                }
+                const page: PatientSnapshot = await response.json();
+                if (version === null) {
+                    version = page.version;
+                }
+                loaded.push(...page.patients);
+                cursor = page.nextCursor;
+            } while (cursor !== null);
+
+            setPatients(loaded);
+            setLastUpdate(new Date());
+            versionRef.current = version;
+            console.log('Загружен снимок пациентов, версия', version);
+
+            const buffered = pendingEvents.current;
+            pendingEvents.current = [];
+            applyEvents(buffered);
         } catch (error) {
             console.error('Ошибка загрузки пациентов:', error);
         }
     };
 
     useEffect(() => {
-        loadCurrentPatients();
-
         const stompClient = new Client({
             brokerURL: 'wss://localhost:8081/ws',
 
@@ -53,18 +140,20 @@ export default function HospitalChiefUI() {
             console.log('WebSocket подключен');
             setConnected(true);
 
-            loadCurrentPatients();
-
-            subscription = stompClient.subscribe('/topic/patients', (message) => {
+            // Сначала подписка, затем снимок: события, пришедшие до снимка, не теряются
+            pendingEvents.current = [];
+            versionRef.current = null;
+            subscription = stompClient.subscribe('/topic/patients/events', (message) => {
                 try {
-                    const updatedPatients = JSON.parse(message.body);
-                    console.log('Получены обновления пациентов через WebSocket:', updatedPatients);
-                    setPatients(updatedPatients);
-                    setLastUpdate(new Date());
+                    const events: PatientEvent[] = JSON.parse(message.body);
+                    console.log('Получены изменения пациентов через WebSocket:', events);
+                    applyEvents(events);
                 } catch (e) {
                     console.error('Ошибка парсинга сообщения:', e);
                 }
             });
+
+            loadCurrentPatients();
         };
 
         stompClient.onStompError = (frame) => {
@@ -152,6 +241,7 @@ export default function HospitalChiefUI() {
                                 <th style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'left' }}>Фамилия</th>
                                 <th style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>Дата рождения</th>
                                 <th style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>Возраст</th>
+                                <th style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>Отделение</th>
                                 <th style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>Дата регистрации</th>
                             </tr>
                             </thead>
@@ -186,6 +276,9 @@ export default function HospitalChiefUI() {
                         {calculateAge(patient.dateOfBirth)} лет
                       </span>
                                     </td>
+                                    <td style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>
+                                        {patient.ward ?? '—'}
+                                    </td>
                                     <td style={{ border: '1px solid #ddd', padding: '12px', textAlign: 'center' }}>
                                         {patient.createdAt}
                                     </td>
@@ -0,0 +1,34 @@
+package ru.platik777.loadtest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка доставки: от ответа reception-api на POST /api/patients до прихода ADT с тем же PID-3
+ * в MLLP-заглушку. Работает, только когда заглушка запущена в том же процессе.
+ */
+public class DeliveryTracker {
+
+    private final Map<Long, Long> admittedAt = new ConcurrentHashMap<>();
+    private final EndpointStats stats = new EndpointStats("hl7-delivery");
+
+    public void admitted(long patientId) {
+        admittedAt.put(patientId, System.nanoTime());
+    }
+
+    public void delivered(long patientId) {
+        Long started = admittedAt.remove(patientId);
+        if (started != null) {
+            stats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started), 200);
+        }
+    }
+
+    public int pending() {
+        return admittedAt.size();
+    }
+
+    public EndpointStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.platik777.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек одной конечной точки в микросекундах: интервальная (Recorder) для
+ * периодических отчётов и накопленная за весь прогон.
+ */
+public class EndpointStats {
+
+    private final String name;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    private Histogram interval;
+
+    public EndpointStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long latencyMicros, int status) {
+        recorder.recordValue(Math.max(1, latencyMicros));
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (status < 200 || status >= 300) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Запрос завершился без HTTP-ответа (таймаут, отказ в соединении); в статусах учитывается как 0.
+     */
+    public void recordFailure(long latencyMicros, Throwable error) {
+        recorder.recordValue(Math.max(1, latencyMicros));
+        statuses.computeIfAbsent(0, s -> new LongAdder()).increment();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        failures.computeIfAbsent(cause.getClass().getSimpleName(), c -> new LongAdder()).increment();
+        errors.increment();
+    }
+
+    /**
+     * Забирает интервальную гистограмму и добавляет её в накопленную. Вызывается одним потоком отчётов.
+     */
+    public synchronized Histogram drainInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    /**
+     * Обнуляет всё записанное, например после прогрева.
+     */
+    public synchronized void reset() {
+        recorder.reset();
+        total.reset();
+        statuses.clear();
+        failures.clear();
+        errors.reset();
+    }
+
+    public synchronized Histogram getTotal() {
+        return total;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        Map<Integer, Long> result = new TreeMap<>();
+        statuses.forEach((status, count) -> result.put(status, count.sum()));
+        return result;
+    }
+
+    public Map<String, Long> getFailures() {
+        Map<String, Long> result = new TreeMap<>();
+        failures.forEach((cause, count) -> result.put(cause, count.sum()));
+        return result;
+    }
+
+    public synchronized void writeDistribution(Path dir) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(dir.resolve(name + ".hgrm").toFile()))) {
+            // Значения в микросекундах, в файле — миллисекунды
+            total.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package ru.platik777.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Открытая модель нагрузки: запросы отправляются по расписанию с частотой rate независимо от того,
+ * успели ли ответить предыдущие. Задержка считается от запланированного момента отправки, поэтому
+ * очередь перед сервисом попадает в гистограмму (без coordinated omission).
+ * <p>
+ * С --concurrency=N модель закрытая: N клиентов, каждый отправляет следующий запрос сразу после ответа
+ * на предыдущий, задержка считается от фактической отправки. Так меряется пропускная способность
+ * при заданном числе одновременных запросов, rate и max-in-flight не используются.
+ */
+public class LoadGenerator {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private enum Operation {
+        ADMIT, LIST, SEARCH, DISCHARGE
+    }
+
+    private final String baseUrl;
+    private final int rate;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final long reportIntervalSeconds;
+    private final int maxInFlight;
+    private final int concurrency;
+    private final Duration requestTimeout;
+    private final Path histogramDir;
+    private final Map<Operation, Integer> mix;
+    private final DeliveryTracker deliveryTracker;
+
+    private final HttpClient client;
+    private final Map<Operation, EndpointStats> stats = new LinkedHashMap<>();
+    private final Queue<Long> admittedIds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong backlogged = new AtomicLong();
+
+    private String token;
+
+    public LoadGenerator(Options options, DeliveryTracker deliveryTracker) throws GeneralSecurityException {
+        this.baseUrl = options.get("url", "https://localhost:8080");
+        this.rate = options.getInt("rate", 100);
+        this.durationSeconds = options.getLong("duration-s", 60);
+        this.warmupSeconds = options.getLong("warmup-s", 10);
+        this.reportIntervalSeconds = options.getLong("report-interval-s", 5);
+        this.maxInFlight = options.getInt("max-in-flight", 2000);
+        this.concurrency = options.getInt("concurrency", 0);
+        this.requestTimeout = Duration.ofSeconds(options.getLong("timeout-s", 30));
+        String dir = options.get("hgrm-dir", null);
+        this.histogramDir = dir == null ? null : Path.of(dir);
+        this.mix = parseMix(options.get("mix", "admit:50,list:30,search:15,discharge:5"));
+        this.deliveryTracker = deliveryTracker;
+
+        for (Operation operation : mix.keySet()) {
+            stats.put(operation, new EndpointStats(operation.name().toLowerCase()));
+        }
+
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .sslContext(trustAll())
+                .connectTimeout(Duration.ofSeconds(options.getLong("connect-timeout-s", 10)))
+                .build();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        authenticate();
+
+        if (concurrency > 0) {
+            System.out.printf("Нагрузка на %s: %d одновременных запросов, прогрев %d с, замер %d с, смесь %s%n",
+                    baseUrl, concurrency, warmupSeconds, durationSeconds, mix);
+        } else {
+            System.out.printf("Нагрузка на %s: %d запр/с, прогрев %d с, замер %d с, смесь %s%n",
+                    baseUrl, rate, warmupSeconds, durationSeconds, mix);
+        }
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long intervalNanos = 1_000_000_000L / rate;
+        long startNanos = System.nanoTime();
+        long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.schedule(this::resetAfterWarmup, warmupSeconds, TimeUnit.SECONDS);
+        reporter.scheduleAtFixedRate(() -> report(startNanos), reportIntervalSeconds, reportIntervalSeconds,
+                TimeUnit.SECONDS);
+
+        if (concurrency > 0) {
+            CountDownLatch clients = new CountDownLatch(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                sendNext(endNanos, clients);
+            }
+            clients.await();
+            reporter.shutdownNow();
+            summary();
+            return;
+        }
+
+        for (long i = 0; ; i++) {
+            long intendedNanos = startNanos + i * intervalNanos;
+            if (intendedNanos >= endNanos) {
+                break;
+            }
+            long wait = intendedNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            if (!inFlight.tryAcquire()) {
+                // Ждём слот: задержка всё равно отсчитывается от intendedNanos
+                backlogged.incrementAndGet();
+                inFlight.acquire();
+            }
+            send(nextOperation(), intendedNanos).whenComplete((r, e) -> inFlight.release());
+        }
+
+        inFlight.acquire(maxInFlight);
+        reporter.shutdownNow();
+        summary();
+    }
+
+    /**
+     * Один клиент закрытой модели: следующий запрос уходит из обработчика ответа на предыдущий.
+     */
+    private void sendNext(long endNanos, CountDownLatch clients) {
+        long now = System.nanoTime();
+        if (now >= endNanos) {
+            clients.countDown();
+            return;
+        }
+        send(nextOperation(), now).whenComplete((r, e) -> sendNext(endNanos, clients));
+    }
+
+    private void authenticate() throws IOException, InterruptedException {
+        String username = "load" + System.currentTimeMillis();
+        String body = "{\"username\":\"" + username + "\",\"password\":\"load\",\"fullName\":\"Нагрузочный тест\"}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IOException("Не удалось получить токен: " + response.statusCode() + " " + response.body());
+        }
+        this.token = matcher.group(1);
+    }
+
+    private Operation nextOperation() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey() == Operation.DISCHARGE && admittedIds.isEmpty() && mix.containsKey(Operation.ADMIT)
+                        ? Operation.ADMIT
+                        : entry.getKey();
+            }
+        }
+        return Operation.ADMIT;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(Operation operation, long intendedNanos) {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + token);
+
+        Long dischargeId = null;
+        switch (operation) {
+            case ADMIT -> {
+                long n = sequence.incrementAndGet();
+                String body = "{\"firstName\":\"Нагрузка\",\"lastName\":\"Тест" + n + "\",\"dateOfBirth\":\"1980-01-01\"}";
+                request.uri(URI.create(baseUrl + "/api/patients"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body));
+            }
+            case LIST -> request.uri(URI.create(baseUrl + "/api/patients?limit=100")).GET();
+            case SEARCH -> request.uri(URI.create(baseUrl + "/api/patients/search?lastName="
+                    + URLEncoder.encode("Тест" + ThreadLocalRandom.current().nextInt(1, 10), StandardCharsets.UTF_8)))
+                    .GET();
+            case DISCHARGE -> {
+                dischargeId = admittedIds.poll();
+                request.uri(URI.create(baseUrl + "/api/patients/" + dischargeId)).DELETE();
+            }
+        }
+
+        EndpointStats endpoint = stats.get(operation);
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+                    if (error != null) {
+                        endpoint.recordFailure(latencyMicros, error);
+                        return;
+                    }
+                    endpoint.record(latencyMicros, response.statusCode());
+                    if (operation == Operation.ADMIT && response.statusCode() == 200) {
+                        Matcher matcher = ID.matcher(response.body());
+                        if (matcher.find()) {
+                            long id = Long.parseLong(matcher.group(1));
+                            admittedIds.add(id);
+                            if (deliveryTracker != null) {
+                                deliveryTracker.admitted(id);
+                            }
+                        }
+                    }
+                });
+    }
+
+    private void resetAfterWarmup() {
+        stats.values().forEach(EndpointStats::reset);
+        if (deliveryTracker != null) {
+            deliveryTracker.getStats().reset();
+        }
+        backlogged.set(0);
+        System.out.println("Прогрев завершён, начат замер");
+    }
+
+    private void report(long startNanos) {
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        StringBuilder line = new StringBuilder().append(String.format("[%4d с]", elapsed));
+        for (EndpointStats endpoint : allStats()) {
+            Histogram interval = endpoint.drainInterval();
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            line.append(String.format(" %s %.0f/с p50 %.1f p99 %.1f max %.1f мс;",
+                    endpoint.getName(),
+                    interval.getTotalCount() / (double) reportIntervalSeconds,
+                    interval.getValueAtPercentile(50) / 1000.0,
+                    interval.getValueAtPercentile(99) / 1000.0,
+                    interval.getMaxValue() / 1000.0));
+        }
+        if (deliveryTracker != null) {
+            line.append(" в пути к HIS ").append(deliveryTracker.pending());
+        }
+        System.out.println(line);
+    }
+
+    private void summary() throws IOException {
+        allStats().forEach(EndpointStats::drainInterval);
+
+        System.out.println();
+        System.out.printf("%-14s %9s %7s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "count", "errors", "p50 мс", "p90 мс", "p99 мс", "p99.9 мс", "max мс", "статусы");
+        for (EndpointStats endpoint : allStats()) {
+            Histogram total = endpoint.getTotal();
+            System.out.printf("%-14s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                    endpoint.getName(),
+                    total.getTotalCount(),
+                    endpoint.getErrors(),
+                    total.getValueAtPercentile(50) / 1000.0,
+                    total.getValueAtPercentile(90) / 1000.0,
+                    total.getValueAtPercentile(99) / 1000.0,
+                    total.getValueAtPercentile(99.9) / 1000.0,
+                    total.getMaxValue() / 1000.0,
+                    endpoint.getStatuses());
+            if (!endpoint.getFailures().isEmpty()) {
+                System.out.printf("%-14s без ответа: %s%n", "", endpoint.getFailures());
+            }
+        }
+        if (concurrency > 0) {
+            long succeeded = stats.values().stream()
+                    .mapToLong(endpoint -> endpoint.getTotal().getTotalCount() - endpoint.getErrors())
+                    .sum();
+            System.out.printf("Пропускная способность: %.0f успешных запр/с при %d одновременных запросах%n",
+                    succeeded / (double) durationSeconds, concurrency);
+        } else {
+            System.out.printf("Ожиданий свободного слота (max-in-flight=%d): %d%n", maxInFlight, backlogged.get());
+        }
+
+        if (histogramDir != null) {
+            Files.createDirectories(histogramDir);
+            for (EndpointStats endpoint : allStats()) {
+                endpoint.writeDistribution(histogramDir);
+            }
+            System.out.println("Гистограммы записаны в " + histogramDir.toAbsolutePath());
+        }
+    }
+
+    private List<EndpointStats> allStats() {
+        List<EndpointStats> all = new ArrayList<>(stats.values());
+        if (deliveryTracker != null) {
+            all.add(deliveryTracker.getStats());
+        }
+        return all;
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> result = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] kv = part.split(":");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) {
+                result.put(Operation.valueOf(kv[0].trim().toUpperCase()), weight);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Сервисы работают на самоподписанных сертификатах из keystore.p12.
+     */
+    private static SSLContext trustAll() throws GeneralSecurityException {
+        TrustManager trustAll = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[]{trustAll}, null);
+        return context;
+    }
+}
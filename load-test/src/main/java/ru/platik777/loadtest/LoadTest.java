@@ -0,0 +1,75 @@
+package ru.platik777.loadtest;
+
+/**
+ * Точка входа нагрузочного стенда.
+ *
+ * <pre>
+ * java -jar target/load-test.jar standin [--port=2575] [--batch-port=2576] [параметры заглушки]
+ * java -jar target/load-test.jar load    [параметры нагрузки]
+ * java -jar target/load-test.jar run     [параметры заглушки] [параметры нагрузки]
+ *
+ * Заглушка HIS:
+ *   --latency-ms=5 --jitter-ms=2 --nack-rate=0.0 --disconnect-rate=0.0
+ *   --degrade-after-s=30 --degraded-latency-ms=500 --degraded-nack-rate=0.2 ...
+ *
+ * Нагрузка на reception-api:
+ *   --url=https://localhost:8080 --rate=100 --warmup-s=10 --duration-s=60
+ *   --mix=admit:50,list:30,search:15,discharge:5 --max-in-flight=2000 [--concurrency=1000]
+ *   --connect-timeout-s=10 --timeout-s=30 --report-interval-s=5 --hgrm-dir=target/hgrm
+ * </pre>
+ *
+ * В режиме run заглушка и генератор работают в одном процессе, и дополнительно меряется задержка
+ * доставки ADT до HIS (hl7-delivery). reception-api при этом запускается отдельно с
+ * hl7.server.port/hl7.batch.port, указывающими на заглушку. Сравнение режимов потоков с командами
+ * прогонов — в virtual-threads.md.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Использование: load-test (standin|load|run) [--key=value ...]");
+            System.exit(2);
+        }
+
+        // Сервисы выдают самоподписанный сертификат на localhost
+        System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+
+        Options options = new Options(args, 1);
+        switch (args[0]) {
+            case "standin" -> {
+                MllpStandIn standIn = startStandIn(options, null);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(standIn.stats())));
+                Thread.currentThread().join();
+            }
+            case "load" -> new LoadGenerator(options, null).run();
+            case "run" -> {
+                DeliveryTracker tracker = new DeliveryTracker();
+                try (MllpStandIn standIn = startStandIn(options, tracker)) {
+                    new LoadGenerator(options, tracker).run();
+                    System.out.println("Заглушка HIS: " + standIn.stats());
+                }
+            }
+            default -> {
+                System.err.println("Неизвестный режим: " + args[0]);
+                System.exit(2);
+            }
+        }
+    }
+
+    private static MllpStandIn startStandIn(Options options, DeliveryTracker tracker) throws Exception {
+        StandInBehavior behavior = RandomFaultBehavior.fromOptions(options, "");
+        long degradeAfterSeconds = options.getLong("degrade-after-s", -1);
+        if (degradeAfterSeconds >= 0) {
+            behavior = new PhasedBehavior(behavior, RandomFaultBehavior.fromOptions(options, "degraded-"),
+                    degradeAfterSeconds * 1000);
+        }
+
+        MllpStandIn standIn = new MllpStandIn(behavior, tracker == null ? id -> { } : tracker::delivered);
+        standIn.listen(options.getInt("port", 2575));
+        int batchPort = options.getInt("batch-port", 2576);
+        if (batchPort > 0) {
+            standIn.listen(batchPort);
+        }
+        return standIn;
+    }
+}
@@ -0,0 +1,212 @@
+package ru.platik777.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Заглушка his-server: принимает MLLP-кадры (одиночные ADT и пакеты FHS/BHS) и отвечает ACK, NACK
+ * или обрывает соединение по StandInBehavior. Для каждого подтверждённого сообщения
+ * сообщает PID-3 слушателю — так генератор нагрузки меряет задержку доставки через outbox.
+ */
+public class MllpStandIn implements AutoCloseable {
+
+    private static final int START_BYTE = 0x0b;
+    private static final int END_BYTE1 = 0x1c;
+    private static final int END_BYTE2 = 0x0d;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final StandInBehavior behavior;
+    private final LongConsumer deliveryListener;
+    private final List<ServerSocket> serverSockets = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "mllp-stand-in");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong ackControlIds = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong acks = new AtomicLong();
+    private final AtomicLong nacks = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public MllpStandIn(StandInBehavior behavior, LongConsumer deliveryListener) {
+        this.behavior = behavior;
+        this.deliveryListener = deliveryListener;
+    }
+
+    public void listen(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port);
+        serverSockets.add(serverSocket);
+        executor.execute(() -> acceptLoop(serverSocket));
+        System.out.println("MLLP-заглушка HIS слушает порт " + port + " (" + behavior + ")");
+    }
+
+    private void acceptLoop(ServerSocket serverSocket) {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> handleConnection(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка приёма соединения: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+
+            String payload;
+            while ((payload = readFrame(in)) != null) {
+                frames.incrementAndGet();
+
+                long latency = behavior.latencyMillis();
+                if (latency > 0) {
+                    Thread.sleep(latency);
+                }
+
+                StandInBehavior.Action action = behavior.nextAction();
+                if (action == StandInBehavior.Action.DISCONNECT) {
+                    disconnects.incrementAndGet();
+                    return;
+                }
+
+                boolean ack = action == StandInBehavior.Action.ACK;
+                (ack ? acks : nacks).incrementAndGet();
+                writeFrame(out, reply(payload, ack));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Клиент закрыл соединение
+        }
+    }
+
+    private String reply(String payload, boolean ack) {
+        String[] segments = payload.split("[\r\n]+");
+        boolean batch = segments.length > 0 && (segments[0].startsWith("FHS|") || segments[0].startsWith("BHS|"));
+
+        String controlId = "";
+        for (String segment : segments) {
+            if (batch ? segment.startsWith("BHS|") : segment.startsWith("MSH|")) {
+                controlId = field(segment, batch ? 11 : 10);
+                break;
+            }
+        }
+
+        if (ack) {
+            for (String segment : segments) {
+                if (segment.startsWith("PID|")) {
+                    messages.incrementAndGet();
+                    String patientId = field(segment, 3);
+                    int component = patientId.indexOf('^');
+                    if (component >= 0) {
+                        patientId = patientId.substring(0, component);
+                    }
+                    try {
+                        deliveryListener.accept(Long.parseLong(patientId));
+                    } catch (NumberFormatException e) {
+                        // PID-3 не числовой — доставку не отслеживаем
+                    }
+                }
+            }
+        }
+
+        String timestamp = LocalDateTime.now().format(TIMESTAMP);
+        String ackControlId = "SI" + ackControlIds.incrementAndGet();
+        String msa = "MSA|" + (ack ? "AA" : "AE") + '|' + controlId + (ack ? "" : "|Отказ заглушки HIS") + '\r';
+        String msh = "MSH|^~\\&|HIS|HOSPITAL|RECEPTION|HOSPITAL|" + timestamp + "||ACK|" + ackControlId + "|P|2.5\r";
+        if (!batch) {
+            return msh + msa;
+        }
+
+        String header = "|^~\\&|HIS|HOSPITAL|RECEPTION|HOSPITAL|" + timestamp + "||||" + ackControlId + "|" + controlId;
+        return "FHS" + header + '\r' + "BHS" + header + '\r' + msh + msa + "BTS|1\rFTS|1\r";
+    }
+
+    /**
+     * Номер поля по нумерации HL7: в MSH/FHS/BHS первое поле — сам разделитель, поэтому индекс сдвинут.
+     */
+    private static String field(String segment, int number) {
+        String[] fields = segment.split("\\|", -1);
+        boolean header = segment.startsWith("MSH|") || segment.startsWith("FHS|") || segment.startsWith("BHS|");
+        int index = header ? number - 1 : number;
+        return index < fields.length ? fields[index] : "";
+    }
+
+    private static String readFrame(InputStream in) throws IOException {
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                return null;
+            }
+        } while (b != START_BYTE);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        while (true) {
+            b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            if (b == END_BYTE1) {
+                int next = in.read();
+                if (next == END_BYTE2) {
+                    return buffer.toString(StandardCharsets.UTF_8);
+                }
+                if (next == -1) {
+                    return null;
+                }
+                buffer.write(b);
+                buffer.write(next);
+            } else {
+                buffer.write(b);
+            }
+        }
+    }
+
+    private static void writeFrame(OutputStream out, String payload) throws IOException {
+        out.write(START_BYTE);
+        out.write(payload.getBytes(StandardCharsets.UTF_8));
+        out.write(END_BYTE1);
+        out.write(END_BYTE2);
+        out.flush();
+    }
+
+    public String stats() {
+        return String.format("кадров %d, ACK %d, NACK %d, обрывов %d, подтверждено сообщений %d",
+                frames.get(), acks.get(), nacks.get(), disconnects.get(), messages.get());
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        for (ServerSocket serverSocket : serverSockets) {
+            serverSocket.close();
+        }
+        executor.shutdownNow();
+    }
+}
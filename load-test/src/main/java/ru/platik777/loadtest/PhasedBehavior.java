@@ -0,0 +1,36 @@
+package ru.platik777.loadtest;
+
+/**
+ * Первые switchAfterMillis работает healthy, затем degraded — деградация HIS посреди прогона.
+ */
+public class PhasedBehavior implements StandInBehavior {
+
+    private final StandInBehavior healthy;
+    private final StandInBehavior degraded;
+    private final long switchAtNanos;
+
+    public PhasedBehavior(StandInBehavior healthy, StandInBehavior degraded, long switchAfterMillis) {
+        this.healthy = healthy;
+        this.degraded = degraded;
+        this.switchAtNanos = System.nanoTime() + switchAfterMillis * 1_000_000;
+    }
+
+    private StandInBehavior current() {
+        return System.nanoTime() < switchAtNanos ? healthy : degraded;
+    }
+
+    @Override
+    public long latencyMillis() {
+        return current().latencyMillis();
+    }
+
+    @Override
+    public Action nextAction() {
+        return current().nextAction();
+    }
+
+    @Override
+    public String toString() {
+        return healthy + ", затем " + degraded;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.platik777.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Задержка latency ± jitter, доля NACK и доля обрывов соединения без ответа.
+ */
+public class RandomFaultBehavior implements StandInBehavior {
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double nackRate;
+    private final double disconnectRate;
+
+    public RandomFaultBehavior(long latencyMillis, long jitterMillis, double nackRate, double disconnectRate) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.nackRate = nackRate;
+        this.disconnectRate = disconnectRate;
+    }
+
+    public static RandomFaultBehavior fromOptions(Options options, String prefix) {
+        return new RandomFaultBehavior(
+                options.getLong(prefix + "latency-ms", 0),
+                options.getLong(prefix + "jitter-ms", 0),
+                options.getDouble(prefix + "nack-rate", 0),
+                options.getDouble(prefix + "disconnect-rate", 0));
+    }
+
+    @Override
+    public long latencyMillis() {
+        if (jitterMillis <= 0) {
+            return latencyMillis;
+        }
+        return Math.max(0, latencyMillis + ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1));
+    }
+
+    @Override
+    public Action nextAction() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < disconnectRate) {
+            return Action.DISCONNECT;
+        }
+        if (roll < disconnectRate + nackRate) {
+            return Action.NACK;
+        }
+        return Action.ACK;
+    }
+
+    @Override
+    public String toString() {
+        return "задержка " + latencyMillis + "±" + jitterMillis + " мс, NACK " + nackRate + ", обрывы " + disconnectRate;
+    }
+}
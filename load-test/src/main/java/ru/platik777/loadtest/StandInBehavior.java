@@ -0,0 +1,17 @@
+package ru.platik777.loadtest;
+
+/**
+ * Поведение MLLP-заглушки HIS на очередной кадр: сколько ждать и что ответить.
+ */
+public interface StandInBehavior {
+
+    enum Action {
+        ACK,
+        NACK,
+        DISCONNECT
+    }
+
+    long latencyMillis();
+
+    Action nextAction();
+}
@@ -0,0 +1,25 @@
+package ru.platik777.receptionapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableScheduling
+public class HL7DispatchConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor hl7DispatchExecutor(@Value("${hl7.outbox.workers:4}") int workers) {
+        // Обычные потоки и при spring.threads.virtual.enabled=true: виртуальные потоки доставки стоят в одной
+        // очереди планировщика с потоками запросов, и под нагрузкой доставка в HIS почти останавливается
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setThreadNamePrefix("hl7-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.platik777.receptionapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.client.RestClientSsl;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+
+@Configuration
+public class HisClientConfig {
+
+    /**
+     * REST API his-server. Сертификат HIS самоподписанный, доверие к нему — SSL-бандл his.
+     */
+    @Bean
+    public RestClient hisRestClient(RestClient.Builder builder,
+                                    RestClientSsl ssl,
+                                    @Value("${his.api.url:https://localhost:8081}") String baseUrl) {
+        return builder.baseUrl(baseUrl).apply(ssl.fromBundle("his")).build();
+    }
+}
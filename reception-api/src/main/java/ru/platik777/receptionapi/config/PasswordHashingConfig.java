@@ -0,0 +1,29 @@
+package ru.platik777.receptionapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class PasswordHashingConfig {
+
+    /**
+     * BCrypt выполняется здесь, а не на потоках Tomcat. Очередь ограничена: при переполнении
+     * задача отклоняется и клиент получает 429, вместо того чтобы ждать и занимать соединение.
+     * Хеширование нагружает CPU, поэтому потоки остаются обычными и в режиме виртуальных потоков.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${auth.hash.workers:0}") int workers,
+            @Value("${auth.hash.queue-capacity:64}") int queueCapacity) {
+        int threads = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        return executor;
+    }
+}
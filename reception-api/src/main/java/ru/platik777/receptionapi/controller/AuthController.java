@@ -1,13 +1,20 @@
 package ru.platik777.receptionapi.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import ru.platik777.receptionapi.entity.User;
-import ru.platik777.receptionapi.repository.UserRepository;
 import ru.platik777.receptionapi.security.JwtUtil;
+import ru.platik777.receptionapi.security.LoginRateLimiter;
+import ru.platik777.receptionapi.security.PasswordHasher;
+import ru.platik777.receptionapi.security.PasswordHashingBusyException;
+import ru.platik777.receptionapi.service.UserService;
+
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -16,42 +23,85 @@ import ru.platik777.receptionapi.security.JwtUtil;
 @Slf4j
 public class AuthController {
 
-    private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final UserService userService;
+    private final PasswordHasher passwordHasher;
+    private final LoginRateLimiter loginRateLimiter;
     private final JwtUtil jwtUtil;
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
-        User user = userRepository.findByUsername(request.username()).orElse(null);
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest request,
+                                                     HttpServletRequest httpRequest) {
+        long retryAfter = loginRateLimiter.tryAcquire(request.username(), httpRequest.getRemoteAddr());
+        if (retryAfter > 0) {
+            log.warn("Превышен лимит попыток входа: {} с {}", request.username(), httpRequest.getRemoteAddr());
+            return CompletableFuture.completedFuture(tooManyRequests(retryAfter));
+        }
 
-        if (user == null || !passwordEncoder.matches(request.password(), user.getPassword())) {
-            return ResponseEntity.status(401).body(new ErrorResponse("Неверное имя пользователя или пароль"));
+        User user = userService.findByUsername(request.username()).orElse(null);
+        if (user == null) {
+            return CompletableFuture.completedFuture(invalidCredentials());
         }
 
-        String token = jwtUtil.generateToken(user.getUsername());
+        try {
+            return passwordHasher.matches(request.password(), user.getPassword()).thenApply(matches -> {
+                if (!matches) {
+                    return invalidCredentials();
+                }
+                loginRateLimiter.reset(user.getUsername());
+
+                String token = jwtUtil.generateToken(user.getUsername());
 
-        log.info("Пользователь {} успешно вошел в систему", user.getUsername());
+                log.info("Пользователь {} успешно вошел в систему", user.getUsername());
 
-        return ResponseEntity.ok(new LoginResponse(token, user.getUsername(), user.getFullName()));
+                return ResponseEntity.ok(new LoginResponse(token, user.getUsername(), user.getFullName()));
+            });
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Вход {} отклонён: {}", request.username(), e.getMessage());
+            return CompletableFuture.completedFuture(tooManyRequests(1));
+        }
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
-        if (userRepository.findByUsername(request.username()).isPresent()) {
-            return ResponseEntity.badRequest().body(new ErrorResponse("Пользователь уже существует"));
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody RegisterRequest request,
+                                                        HttpServletRequest httpRequest) {
+        long retryAfter = loginRateLimiter.tryAcquire(null, httpRequest.getRemoteAddr());
+        if (retryAfter > 0) {
+            return CompletableFuture.completedFuture(tooManyRequests(retryAfter));
+        }
+
+        if (userService.findByUsername(request.username()).isPresent()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(new ErrorResponse("Пользователь уже существует")));
         }
 
-        User user = new User();
-        user.setUsername(request.username());
-        user.setPassword(passwordEncoder.encode(request.password()));
-        user.setFullName(request.fullName());
+        try {
+            return passwordHasher.encode(request.password()).thenApply(encodedPassword -> {
+                User user = new User();
+                user.setUsername(request.username());
+                user.setPassword(encodedPassword);
+                user.setFullName(request.fullName());
 
-        userRepository.save(user);
+                userService.register(user);
 
-        log.info("Зарегистрирован новый пользователь: {}", user.getUsername());
+                log.info("Зарегистрирован новый пользователь: {}", user.getUsername());
+
+                String token = jwtUtil.generateToken(user.getUsername());
+                return ResponseEntity.ok(new LoginResponse(token, user.getUsername(), user.getFullName()));
+            });
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Регистрация {} отклонена: {}", request.username(), e.getMessage());
+            return CompletableFuture.completedFuture(tooManyRequests(1));
+        }
+    }
+
+    private static ResponseEntity<?> invalidCredentials() {
+        return ResponseEntity.status(401).body(new ErrorResponse("Неверное имя пользователя или пароль"));
+    }
 
-        String token = jwtUtil.generateToken(user.getUsername());
-        return ResponseEntity.ok(new LoginResponse(token, user.getUsername(), user.getFullName()));
+    private static ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new ErrorResponse("Слишком много попыток, повторите позже"));
     }
 
     public record LoginRequest(String username, String password) {}
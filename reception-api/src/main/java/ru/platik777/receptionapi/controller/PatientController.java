@@ -1,60 +1,99 @@
 package ru.platik777.receptionapi.controller;
 
+import ru.platik777.receptionapi.dto.PatientPage;
 import ru.platik777.receptionapi.dto.PatientRequest;
 import ru.platik777.receptionapi.dto.PatientResponse;
+import ru.platik777.receptionapi.dto.PatientSearchRequest;
+import ru.platik777.receptionapi.dto.RangeDigest;
+import ru.platik777.receptionapi.dto.ReconciliationReport;
 import ru.platik777.receptionapi.entity.Patient;
-import ru.platik777.receptionapi.repository.PatientRepository;
-import ru.platik777.receptionapi.service.HL7Service;
+import ru.platik777.receptionapi.service.PatientDigestService;
+import ru.platik777.receptionapi.service.PatientExportService;
+import ru.platik777.receptionapi.service.PatientReconciliationService;
+import ru.platik777.receptionapi.service.PatientSearchService;
+import ru.platik777.receptionapi.service.PatientService;
+import ru.platik777.receptionapi.service.ReconciliationBusyException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDate;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/patients")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {PatientController.NEXT_CURSOR_HEADER, PatientController.TOTAL_COUNT_HEADER})
 @RequiredArgsConstructor
 @Slf4j
 public class PatientController {
 
-    private final PatientRepository patientRepository;
-    private final HL7Service hl7Service;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private final PatientService patientService;
+    private final PatientExportService patientExportService;
+    private final PatientSearchService patientSearchService;
+    private final PatientDigestService patientDigestService;
+    private final PatientReconciliationService patientReconciliationService;
 
     @PostMapping
     public ResponseEntity<PatientResponse> addPatient(@RequestBody PatientRequest request) {
         try {
-            Patient patient = new Patient();
-            patient.setFirstName(request.getFirstName());
-            patient.setLastName(request.getLastName());
-            patient.setDateOfBirth(request.getDateOfBirth());
-            patient.setCreatedAt(LocalDate.now());
-
-            patient = patientRepository.save(patient);
-
-            hl7Service.sendPatientAdmission(patient);
+            Patient patient = patientService.admitPatient(request);
 
             log.info("Пациент добавлен: {} {}", patient.getFirstName(), patient.getLastName());
 
-            return ResponseEntity.ok(toResponse(patient));
+            return ResponseEntity.ok(PatientResponse.from(patient));
         } catch (Exception e) {
             log.error("Ошибка при добавлении пациента", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deletePatient(@PathVariable Long id) {
+    @PostMapping("/batch")
+    public ResponseEntity<List<PatientResponse>> addPatients(@RequestBody List<PatientRequest> requests) {
+        try {
+            List<Patient> patients = patientService.admitPatients(requests);
+
+            log.info("Пакетно добавлено пациентов: {}", patients.size());
+
+            return ResponseEntity.ok(
+                    patients.stream()
+                            .map(PatientResponse::from)
+                            .collect(Collectors.toList())
+            );
+        } catch (Exception e) {
+            log.error("Ошибка при пакетном добавлении пациентов", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<PatientResponse> updatePatient(@PathVariable Long id, @RequestBody PatientRequest request) {
         try {
-            Patient patient = patientRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Пациент не найден"));
+            Patient patient = patientService.updatePatient(id, request);
+            log.info("Пациент изменён: {} {}", patient.getFirstName(), patient.getLastName());
 
-            hl7Service.sendPatientDischarge(patient);
+            return ResponseEntity.ok(PatientResponse.from(patient));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Ошибка при изменении пациента", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-            patientRepository.deleteById(id);
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePatient(@PathVariable Long id) {
+        try {
+            Patient patient = patientService.dischargePatient(id);
             log.info("Пациент удалён: {} {}", patient.getFirstName(), patient.getLastName());
 
             return ResponseEntity.ok().build();
@@ -65,21 +104,85 @@ public class PatientController {
     }
 
     @GetMapping
-    public ResponseEntity<List<PatientResponse>> getAllPatients() {
-        List<Patient> patients = patientRepository.findAll();
-        return ResponseEntity.ok(
-                patients.stream()
-                        .map(this::toResponse)
+    public ResponseEntity<List<PatientResponse>> getAllPatients(@RequestParam(required = false) Long after,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(defaultValue = "false") boolean count) {
+        PatientPage page = patientService.getPatientsPage(after, limit);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, String.valueOf(page.nextCursor()));
+        }
+        if (count) {
+            headers.set(TOTAL_COUNT_HEADER, String.valueOf(patientService.countPatients()));
+        }
+
+        return ResponseEntity.ok().headers(headers).body(
+                page.patients().stream()
+                        .map(PatientResponse::from)
                         .collect(Collectors.toList())
         );
     }
 
-    private PatientResponse toResponse(Patient patient) {
-        PatientResponse response = new PatientResponse();
-        response.setId(patient.getId());
-        response.setFirstName(patient.getFirstName());
-        response.setLastName(patient.getLastName());
-        response.setDateOfBirth(patient.getDateOfBirth());
-        return response;
+    @GetMapping("/search")
+    public ResponseEntity<List<PatientResponse>> searchPatients(@ModelAttribute PatientSearchRequest request) {
+        try {
+            return ResponseEntity.ok(
+                    patientSearchService.search(request).stream()
+                            .map(PatientResponse::from)
+                            .collect(Collectors.toList())
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Сводки для сверки с HIS: диапазон id [from, to) делится на buckets частей.
+     */
+    @GetMapping("/digest")
+    public ResponseEntity<List<RangeDigest>> getDigest(@RequestParam long from,
+                                                       @RequestParam long to,
+                                                       @RequestParam(defaultValue = "16") int buckets) {
+        try {
+            return ResponseEntity.ok(patientDigestService.digest(from, to, buckets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/reconcile")
+    public ResponseEntity<ReconciliationReport> reconcile() {
+        try {
+            return ResponseEntity.ok(patientReconciliationService.reconcile());
+        } catch (ReconciliationBusyException e) {
+            log.info("Сверка с HIS не запущена: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("Ошибка сверки с HIS", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPatients(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        PatientExportService.Format exportFormat;
+        try {
+            exportFormat = PatientExportService.Format.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("patients." + exportFormat.getExtension() + (gzip ? ".gz" : ""))
+                        .build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return response.body(out -> patientExportService.export(exportFormat, gzip, out));
     }
 }
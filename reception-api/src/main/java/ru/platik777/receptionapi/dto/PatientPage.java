@@ -0,0 +1,11 @@
+package ru.platik777.receptionapi.dto;
+
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.util.List;
+
+/**
+ * Страница пациентов, упорядоченная по id. nextCursor передаётся в after для следующей страницы,
+ * null — страница последняя.
+ */
+public record PatientPage(List<Patient> patients, Long nextCursor) {}
@@ -8,4 +8,5 @@ public class PatientRequest {
     private String firstName;
     private String lastName;
     private LocalDate dateOfBirth;
+    private String ward;
 }
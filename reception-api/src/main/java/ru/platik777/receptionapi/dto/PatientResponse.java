@@ -1,6 +1,8 @@
 package ru.platik777.receptionapi.dto;
 
 import lombok.Data;
+import ru.platik777.receptionapi.entity.Patient;
+
 import java.time.LocalDate;
 
 @Data
@@ -9,4 +11,15 @@ public class PatientResponse {
     private String firstName;
     private String lastName;
     private LocalDate dateOfBirth;
+    private String ward;
+
+    public static PatientResponse from(Patient patient) {
+        PatientResponse response = new PatientResponse();
+        response.setId(patient.getId());
+        response.setFirstName(patient.getFirstName());
+        response.setLastName(patient.getLastName());
+        response.setDateOfBirth(patient.getDateOfBirth());
+        response.setWard(patient.getWard());
+        return response;
+    }
 }
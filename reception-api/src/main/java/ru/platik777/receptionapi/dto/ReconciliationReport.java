@@ -0,0 +1,7 @@
+package ru.platik777.receptionapi.dto;
+
+/**
+ * Итог сверки с HIS. hisBytes — сколько байт ответов HIS получено за сверку.
+ */
+public record ReconciliationReport(long rangesCompared, long rowsCompared, int admissionsResent,
+                                   int dischargesResent, long hisBytes, long durationMs) {}
@@ -0,0 +1,98 @@
+package ru.platik777.receptionapi.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "hl7_outbox", indexes = @Index(name = "idx_hl7_outbox_patient", columnList = "patientId, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EventType eventType;
+
+    @Column(nullable = false)
+    private Long patientId;
+
+    /**
+     * MSH-10, назначается при постановке в очередь и не меняется между повторами, иначе HIS не распознает дубликат.
+     */
+    @Column(length = 20)
+    private String controlId;
+
+    @Column(nullable = false)
+    private String firstName;
+
+    @Column(nullable = false)
+    private String lastName;
+
+    @Column(nullable = false)
+    private LocalDate dateOfBirth;
+
+    @Column(length = 64)
+    private String ward;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    /**
+     * Не null — HIS отклонил сообщение hl7.outbox.max-attempts раз, и оно больше не отправляется.
+     */
+    private Instant parkedAt;
+
+    public enum EventType {
+        ADMISSION,
+        DISCHARGE,
+        // ADT^A08: изменены данные пациента
+        UPDATE,
+        // ADT^A02: изменилось только отделение
+        TRANSFER
+    }
+
+    public static OutboxMessage of(EventType eventType, Patient patient, String controlId) {
+        Instant now = Instant.now();
+
+        OutboxMessage message = new OutboxMessage();
+        message.setEventType(eventType);
+        message.setPatientId(patient.getId());
+        message.setControlId(controlId);
+        message.setFirstName(patient.getFirstName());
+        message.setLastName(patient.getLastName());
+        message.setDateOfBirth(patient.getDateOfBirth());
+        message.setWard(patient.getWard());
+        message.setNextAttemptAt(now);
+        message.setCreatedAt(now);
+        return message;
+    }
+
+    public Patient toPatient() {
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        patient.setDateOfBirth(dateOfBirth);
+        patient.setWard(ward);
+        return patient;
+    }
+}
@@ -6,9 +6,14 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Entity
-@Table(name = "patients")
+@Table(name = "patients", indexes = {
+        @Index(name = "idx_patients_last_first", columnList = "last_name_norm, first_name_norm, id"),
+        @Index(name = "idx_patients_first_last", columnList = "first_name_norm, last_name_norm, id"),
+        @Index(name = "idx_patients_dob", columnList = "dateOfBirth, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,6 +32,34 @@ public class Patient {
     @Column(nullable = false)
     private LocalDate dateOfBirth;
 
+    // Отделение (PV1-3), null — не назначено
+    @Column(length = 64)
+    private String ward;
+
     @Column(name = "created_at")
     private LocalDate createdAt;
+
+    // Нормализованные копии имён для регистронезависимого поиска по префиксу
+    @Column(name = "last_name_norm")
+    private String lastNameNorm;
+
+    @Column(name = "first_name_norm")
+    private String firstNameNorm;
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchColumns() {
+        this.lastNameNorm = normalizeName(lastName);
+        this.firstNameNorm = normalizeName(firstName);
+    }
+
+    /**
+     * Нижний регистр без учёта локали и ё → е: «Ёлкин», «ЕЛКИН» и «елкин» совпадают.
+     */
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        return name.strip().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
 }
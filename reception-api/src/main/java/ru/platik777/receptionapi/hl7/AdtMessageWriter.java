@@ -0,0 +1,148 @@
+package ru.platik777.receptionapi.hl7;
+
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * ER7 для ADT^A01, A02, A03 и A08 без модели HAPI: неизменная часть MSH собрана заранее, поля пишутся прямо
+ * в StringBuilder. Результат совпадает с PipeParser.encode той же модели HAPI — те же сегменты MSH, EVN, PID,
+ * PV1 и то же экранирование разделителей; это проверяет AdtMessageWriterTest. PV1 пишется, когда известно
+ * отделение, и всегда в A02.
+ */
+public final class AdtMessageWriter {
+
+    public static final String ADMISSION_TYPE = "ADT_A01";
+    public static final String DISCHARGE_TYPE = "ADT_A03";
+    public static final String TRANSFER_TYPE = "ADT_A02";
+    // Структура A08 в HL7 2.5 — ADT_A01, тип для журнала и метрик различает их по событию
+    public static final String UPDATE_TYPE = "ADT_A08";
+
+    private static final String MSH_HEADER = "MSH|^~\\&|RECEPTION|HOSPITAL|HIS|HOSPITAL|";
+    private static final String ADMISSION_MSH_9 = "||ADT^A01^ADT_A01|";
+    private static final String DISCHARGE_MSH_9 = "||ADT^A03^ADT_A03|";
+    private static final String TRANSFER_MSH_9 = "||ADT^A02^ADT_A02|";
+    private static final String UPDATE_MSH_9 = "||ADT^A08^ADT_A01|";
+    private static final String MSH_TRAILER = "|P|2.5\rEVN||";
+
+    private AdtMessageWriter() {
+    }
+
+    public static EncodedMessage admission(Patient patient, String controlId) {
+        return write(ADMISSION_TYPE, ADMISSION_MSH_9, patient, controlId, OffsetDateTime.now());
+    }
+
+    public static EncodedMessage discharge(Patient patient, String controlId) {
+        return write(DISCHARGE_TYPE, DISCHARGE_MSH_9, patient, controlId, OffsetDateTime.now());
+    }
+
+    public static EncodedMessage update(Patient patient, String controlId) {
+        return write(UPDATE_TYPE, UPDATE_MSH_9, patient, controlId, OffsetDateTime.now());
+    }
+
+    public static EncodedMessage transfer(Patient patient, String controlId) {
+        return write(TRANSFER_TYPE, TRANSFER_MSH_9, patient, controlId, OffsetDateTime.now());
+    }
+
+    static EncodedMessage write(String type, String msh9, Patient patient, String controlId, OffsetDateTime now) {
+        String patientId = patient.getId().toString();
+
+        StringBuilder out = new StringBuilder(160);
+        out.append(MSH_HEADER);
+        appendTimestamp(out, now);
+        out.append('.');
+        appendDigits(out, now.getNano() / 1_000_000, 3);
+        appendOffset(out, now.getOffset().getTotalSeconds());
+        out.append(msh9);
+        escape(out, controlId);
+        out.append(MSH_TRAILER);
+        appendTimestamp(out, now);
+
+        out.append("\rPID|||");
+        escape(out, patientId);
+        out.append("||");
+        escape(out, patient.getLastName());
+        // Пустые компоненты и поля в конце PipeParser не пишет
+        if (!isEmpty(patient.getFirstName())) {
+            out.append('^');
+            escape(out, patient.getFirstName());
+        }
+        out.append("||");
+        appendDate(out, patient.getDateOfBirth());
+        out.append('\r');
+
+        if (patient.getWard() != null || type.equals(TRANSFER_TYPE)) {
+            out.append("PV1||I");
+            if (!isEmpty(patient.getWard())) {
+                out.append('|');
+                escape(out, patient.getWard());
+            }
+            out.append('\r');
+        }
+
+        return new EncodedMessage(type, controlId, patientId, out.toString());
+    }
+
+    /**
+     * Экранирование HL7 2.5 (раздел 2.7) для кодирующих символов по умолчанию ^~\&. CR, разделитель сегментов,
+     * пишется как \X000d\ — так же, как у PipeParser.
+     */
+    static void escape(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '|' -> out.append("\\F\\");
+                case '^' -> out.append("\\S\\");
+                case '&' -> out.append("\\T\\");
+                case '~' -> out.append("\\R\\");
+                case '\\' -> out.append("\\E\\");
+                case '\r' -> out.append("\\X000d\\");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static void appendDate(StringBuilder out, LocalDate date) {
+        appendDigits(out, date.getYear(), 4);
+        appendDigits(out, date.getMonthValue(), 2);
+        appendDigits(out, date.getDayOfMonth(), 2);
+    }
+
+    private static void appendTimestamp(StringBuilder out, OffsetDateTime time) {
+        appendDigits(out, time.getYear(), 4);
+        appendDigits(out, time.getMonthValue(), 2);
+        appendDigits(out, time.getDayOfMonth(), 2);
+        appendDigits(out, time.getHour(), 2);
+        appendDigits(out, time.getMinute(), 2);
+        appendDigits(out, time.getSecond(), 2);
+    }
+
+    private static void appendOffset(StringBuilder out, int totalSeconds) {
+        out.append(totalSeconds < 0 ? '-' : '+');
+        int minutes = Math.abs(totalSeconds) / 60;
+        appendDigits(out, minutes / 60, 2);
+        appendDigits(out, minutes % 60, 2);
+    }
+
+    private static void appendDigits(StringBuilder out, int value, int width) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.platik777.receptionapi.hl7;
+
+import org.slf4j.MDC;
+
+/**
+ * Сквозной идентификатор для логов: MSH-10 сообщения (или пакета), по нему одна госпитализация
+ * прослеживается от reception-api через HIS до обновления в UI.
+ */
+public final class CorrelationId {
+
+    public static final String MDC_KEY = "correlationId";
+
+    private CorrelationId() {
+    }
+
+    public static MDC.MDCCloseable put(String controlId) {
+        return MDC.putCloseable(MDC_KEY, controlId);
+    }
+}
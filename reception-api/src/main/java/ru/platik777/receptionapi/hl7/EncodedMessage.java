@@ -0,0 +1,10 @@
+package ru.platik777.receptionapi.hl7;
+
+/**
+ * Готовое ER7-сообщение и поля, которые нужны для журнала и метрик без повторного разбора текста.
+ *
+ * @param type      тип для журнала и метрик: ADT_ и событие MSH-9.2, например ADT_A08 (MSH-9.3 у A08 — ADT_A01)
+ * @param controlId MSH-10
+ * @param patientId PID-3
+ */
+public record EncodedMessage(String type, String controlId, String patientId, String text) {}
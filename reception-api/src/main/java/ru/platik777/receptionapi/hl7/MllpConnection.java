@@ -0,0 +1,123 @@
+package ru.platik777.receptionapi.hl7;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+
+import static ca.uhn.hl7v2.llp.MllpConstants.END_BYTE1;
+import static ca.uhn.hl7v2.llp.MllpConstants.END_BYTE2;
+import static ca.uhn.hl7v2.llp.MllpConstants.START_BYTE;
+
+/**
+ * Долгоживущее MLLP-соединение с HIS: один запрос — один ответ, без фоновых потоков HAPI.
+ */
+public class MllpConnection implements Closeable {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final Charset charset;
+    private final int readTimeoutMs;
+
+    private long lastUsedAt;
+
+    public MllpConnection(String host, int port, int connectTimeoutMs, int readTimeoutMs, Charset charset)
+            throws IOException {
+        this.socket = new Socket();
+        this.charset = charset;
+        this.readTimeoutMs = readTimeoutMs;
+
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+        socket.setSoTimeout(readTimeoutMs);
+
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.lastUsedAt = System.currentTimeMillis();
+    }
+
+    public String sendAndReceive(String message) throws IOException {
+        out.write(START_BYTE);
+        out.write(message.getBytes(charset));
+        out.write(END_BYTE1);
+        out.write(END_BYTE2);
+        out.flush();
+
+        String response = readFrame();
+        lastUsedAt = System.currentTimeMillis();
+        return response;
+    }
+
+    public long getIdleMillis() {
+        return System.currentTimeMillis() - lastUsedAt;
+    }
+
+    /**
+     * Проверяет, что HIS не закрыл соединение, пока оно простаивало в пуле.
+     */
+    public boolean isAlive() {
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown()) {
+            return false;
+        }
+        try {
+            socket.setSoTimeout(1);
+            try {
+                // Незапрошенных данных от HIS быть не должно: и -1 (закрыто), и лишний байт означают негодное соединение
+                in.read();
+                return false;
+            } catch (SocketTimeoutException e) {
+                return true;
+            } finally {
+                socket.setSoTimeout(readTimeoutMs);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private String readFrame() throws IOException {
+        int b;
+        do {
+            b = in.read();
+            if (b == -1) {
+                throw new EOFException("HIS закрыл соединение до получения ответа");
+            }
+        } while (b != START_BYTE);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        while (true) {
+            b = in.read();
+            if (b == -1) {
+                throw new EOFException("HIS закрыл соединение посреди ответа");
+            }
+            if (b == END_BYTE1) {
+                int next = in.read();
+                if (next == END_BYTE2) {
+                    return buffer.toString(charset);
+                }
+                if (next == -1) {
+                    throw new EOFException("HIS закрыл соединение посреди ответа");
+                }
+                buffer.write(b);
+                buffer.write(next);
+            } else {
+                buffer.write(b);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,177 @@
+package ru.platik777.receptionapi.hl7;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул долгоживущих MLLP-соединений с HIS. Соединения открываются лениво, проверяются после простоя
+ * и переоткрываются при обрыве.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MllpConnectionPool {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${hl7.server.host:localhost}")
+    private String host;
+
+    @Value("${hl7.server.port:2575}")
+    private int port;
+
+    @Value("${hl7.pool.size:4}")
+    private int size;
+
+    @Value("${hl7.pool.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${hl7.pool.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${hl7.pool.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    @Value("${hl7.pool.validate-after-idle-ms:30000}")
+    private long validateAfterIdleMs;
+
+    @Value("${hl7.charset:UTF-8}")
+    private Charset charset;
+
+    private BlockingQueue<Slot> idleSlots;
+    private final AtomicInteger inUse = new AtomicInteger();
+    private volatile boolean closed;
+    private Counter waits;
+    private Counter reconnects;
+
+    @PostConstruct
+    public void init() {
+        this.idleSlots = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idleSlots.add(new Slot());
+        }
+
+        Gauge.builder("hl7.pool.size", () -> size).register(meterRegistry);
+        Gauge.builder("hl7.pool.in-use", inUse, AtomicInteger::get).register(meterRegistry);
+        this.waits = Counter.builder("hl7.pool.waits")
+                .description("Запросы, ожидавшие свободного соединения")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("hl7.pool.reconnects")
+                .description("Переоткрытия соединений с HIS")
+                .register(meterRegistry);
+
+        log.info("Пул HL7 соединений с {}:{} создан (размер {})", host, port, size);
+    }
+
+    public String sendAndReceive(String message) throws IOException {
+        Slot slot = acquire();
+        try {
+            return slot.sendAndReceive(message);
+        } finally {
+            inUse.decrementAndGet();
+            idleSlots.offer(slot);
+            // Слот, вернувшийся после shutdown(), закрывает тот, кто первым забрал его из очереди
+            if (closed && idleSlots.remove(slot)) {
+                slot.close();
+            }
+        }
+    }
+
+    private Slot acquire() throws IOException {
+        if (closed) {
+            throw new IOException("Пул HL7 соединений закрыт");
+        }
+        Slot slot = idleSlots.poll();
+        if (slot == null) {
+            waits.increment();
+            try {
+                slot = idleSlots.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Ожидание HL7 соединения прервано", e);
+            }
+            if (slot == null) {
+                throw new IOException("Нет свободного HL7 соединения за " + acquireTimeoutMs + " мс");
+            }
+        }
+        inUse.incrementAndGet();
+        return slot;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        Slot slot;
+        while ((slot = idleSlots.poll()) != null) {
+            slot.close();
+        }
+    }
+
+    private class Slot {
+
+        private MllpConnection connection;
+        private boolean opened;
+
+        String sendAndReceive(String message) throws IOException {
+            boolean reused = ensureConnected();
+            try {
+                return connection.sendAndReceive(message);
+            } catch (IOException e) {
+                close();
+                if (!reused || e instanceof SocketTimeoutException) {
+                    throw e;
+                }
+                // Соединение могло быть закрыто HIS между проверкой и отправкой — одна повторная попытка
+                log.warn("HL7 соединение оборвано, переподключение: {}", e.getMessage());
+                ensureConnected();
+                try {
+                    return connection.sendAndReceive(message);
+                } catch (IOException retryFailure) {
+                    close();
+                    throw retryFailure;
+                }
+            }
+        }
+
+        private boolean ensureConnected() throws IOException {
+            if (connection != null
+                    && (connection.getIdleMillis() < validateAfterIdleMs || connection.isAlive())) {
+                return true;
+            }
+            close();
+            if (opened) {
+                reconnects.increment();
+            }
+            connection = new MllpConnection(host, port, connectTimeoutMs, readTimeoutMs, charset);
+            opened = true;
+            return false;
+        }
+
+        void close() {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.warn("Ошибка при закрытии соединения", e);
+            }
+            connection = null;
+        }
+    }
+}
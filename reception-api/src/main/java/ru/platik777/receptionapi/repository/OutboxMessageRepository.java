@@ -0,0 +1,50 @@
+package ru.platik777.receptionapi.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.platik777.receptionapi.entity.OutboxMessage;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Сообщения, которым пора уходить, кроме тех, перед которыми у того же пациента есть ещё не готовое.
+     */
+    @Query("select m from OutboxMessage m where m.parkedAt is null and m.nextAttemptAt <= :now " +
+            "and not exists (select e.id from OutboxMessage e where e.patientId = m.patientId and e.id < m.id " +
+            "and e.parkedAt is null and e.nextAttemptAt > :now) order by m.id")
+    List<OutboxMessage> findDue(@Param("now") Instant now, Pageable pageable);
+
+    long countByParkedAtIsNull();
+
+    long countByParkedAtIsNotNull();
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxMessage m where m.id = :id")
+    void deleteDelivered(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update OutboxMessage m set m.attempts = m.attempts + 1, m.nextAttemptAt = :nextAttemptAt, " +
+            "m.lastError = :error where m.id = :id")
+    void scheduleRetry(@Param("id") Long id,
+                       @Param("nextAttemptAt") Instant nextAttemptAt,
+                       @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("update OutboxMessage m set m.attempts = m.attempts + 1, m.parkedAt = :parkedAt, " +
+            "m.lastError = :error where m.id = :id")
+    void park(@Param("id") Long id,
+              @Param("parkedAt") Instant parkedAt,
+              @Param("error") String error);
+}
@@ -1,9 +1,56 @@
 package ru.platik777.receptionapi.repository;
 
 import ru.platik777.receptionapi.entity.Patient;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long> {
+public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient> {
+
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Однопроходный курсор по всей таблице. Требует открытой транзакции на всё время чтения.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAllOrderById();
+
+    /**
+     * Курсор по диапазону id [from, to) для сводок сверки. Требует открытой транзакции.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Patient p where p.id >= :from and p.id < :to order by p.id")
+    Stream<Patient> streamByIdRange(@Param("from") long from, @Param("to") long to);
+
+    List<Patient> findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(Long from, Long to, Limit limit);
+
+    /**
+     * Заполняет поисковые колонки у строк, созданных до их появления.
+     */
+    @Modifying
+    @Query("update Patient p set "
+            + "p.lastNameNorm = lower(replace(replace(trim(p.lastName), 'Ё', 'Е'), 'ё', 'е')), "
+            + "p.firstNameNorm = lower(replace(replace(trim(p.firstName), 'Ё', 'Е'), 'ё', 'е')) "
+            + "where p.lastNameNorm is null or p.firstNameNorm is null")
+    int fillMissingSearchColumns();
 }
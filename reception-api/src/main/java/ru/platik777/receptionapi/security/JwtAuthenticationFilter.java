@@ -1,5 +1,6 @@
 package ru.platik777.receptionapi.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.annotation.Nullable;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -19,6 +20,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Override
     protected void doFilterInternal(
@@ -36,10 +38,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String username = jwtUtil.extractUsername(jwt);
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtUtil.isTokenValid(jwt, username)) {
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                String username = verifiedTokenCache.get(jwt);
+                if (username == null) {
+                    // Один разбор и одна проверка подписи; просроченный токен отклоняется здесь же
+                    Claims claims = jwtUtil.verify(jwt);
+                    username = claims.getSubject();
+                    if (username != null && claims.getExpiration() != null) {
+                        verifiedTokenCache.put(jwt, username, claims.getExpiration().getTime());
+                    }
+                }
+
+                if (username != null) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             username,
                             null,
@@ -1,6 +1,7 @@
 package ru.platik777.receptionapi.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -16,6 +17,8 @@ public class JwtUtil {
 
     private final SecretKey secretKey;
     private final long expirationTime;
+    // Парсер потокобезопасен, собирается один раз
+    private final JwtParser parser;
 
     public JwtUtil(
             @Value("${jwt.secret}") String secret,
@@ -23,6 +26,9 @@ public class JwtUtil {
 
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.expirationTime = expirationTime;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build();
     }
 
     public String generateToken(String username) {
@@ -34,23 +40,20 @@ public class JwtUtil {
                 .compact();
     }
 
-    public String extractUsername(String token) {
-        return extractClaims(token).getSubject();
-    }
-
-    public boolean isTokenValid(String token, String username) {
-        return (extractUsername(token).equals(username) && !isTokenExpired(token));
+    /**
+     * Разбирает токен и проверяет подпись один раз. Просроченный или подделанный токен
+     * приводит к JwtException.
+     */
+    public Claims verify(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private Claims extractClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public String extractUsername(String token) {
+        return verify(token).getSubject();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractClaims(token).getExpiration().before(new Date());
+    public boolean isTokenValid(String token, String username) {
+        Claims claims = verify(token);
+        return claims.getSubject().equals(username) && !claims.getExpiration().before(new Date());
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package ru.platik777.receptionapi.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничение попыток входа в фиксированном окне: отдельно по IP (перебор множества логинов)
+ * и по имени пользователя (перебор пароля с разных адресов).
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginRateLimiter {
+
+    private record Window(long startedAt, int attempts) {}
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    @Value("${auth.rate-limit.window-seconds:60}")
+    private long windowSeconds;
+
+    @Value("${auth.rate-limit.per-ip:30}")
+    private int perIp;
+
+    @Value("${auth.rate-limit.per-username:10}")
+    private int perUsername;
+
+    /**
+     * Учитывает попытку.
+     *
+     * @return 0, если попытка разрешена, иначе через сколько секунд можно повторить
+     */
+    public long tryAcquire(String username, String clientIp) {
+        long now = System.currentTimeMillis();
+        long ipWait = acquire("ip:" + clientIp, perIp, now);
+        long userWait = username == null ? 0 : acquire("user:" + username, perUsername, now);
+
+        long wait = Math.max(ipWait, userWait);
+        if (wait > 0) {
+            meterRegistry.counter("auth.rate-limited").increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Успешный вход снимает ограничение с имени пользователя, но не с адреса.
+     */
+    public void reset(String username) {
+        windows.remove("user:" + username);
+    }
+
+    private long acquire(String key, int limit, long now) {
+        long windowMillis = windowSeconds * 1000;
+        Window window = windows.compute(key, (k, current) ->
+                current == null || now - current.startedAt() >= windowMillis
+                        ? new Window(now, 1)
+                        : new Window(current.startedAt(), current.attempts() + 1));
+
+        if (window.attempts() <= limit) {
+            return 0;
+        }
+        return Math.max(1, (window.startedAt() + windowMillis - now + 999) / 1000);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purge() {
+        long expiredBefore = System.currentTimeMillis() - windowSeconds * 1000;
+        windows.values().removeIf(window -> window.startedAt() < expiredBefore);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.platik777.receptionapi.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Асинхронная обёртка над PasswordEncoder на ограниченном пуле passwordHashExecutor.
+ */
+@Component
+@RequiredArgsConstructor
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolTaskExecutor passwordHashExecutor;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @throws PasswordHashingBusyException если очередь пула заполнена
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @throws PasswordHashingBusyException если очередь пула заполнена
+     */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, passwordHashExecutor);
+        } catch (TaskRejectedException e) {
+            meterRegistry.counter("auth.hash.rejected").increment();
+            throw new PasswordHashingBusyException(e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.platik777.receptionapi.security;
+
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(Throwable cause) {
+        super("Очередь хеширования паролей переполнена", cause);
+    }
+}
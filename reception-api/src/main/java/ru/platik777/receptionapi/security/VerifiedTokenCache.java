@@ -0,0 +1,80 @@
+package ru.platik777.receptionapi.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Уже проверенные JWT: ключ — SHA-256 токена, запись живёт до exp токена.
+ * Повторный запрос с тем же токеном не разбирает его и не проверяет подпись.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private record Entry(String username, long expiresAtMillis) {}
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize, MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.hits = meterRegistry.counter("jwt.cache", "result", "hit");
+        this.misses = meterRegistry.counter("jwt.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("jwt.cache.size", Tags.empty(), entries);
+    }
+
+    /**
+     * @return имя пользователя или null, если токена нет в кэше или он уже истёк
+     */
+    public String get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.username();
+    }
+
+    public void put(String token, String username, long expiresAtMillis) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(hash(token), new Entry(username, expiresAtMillis));
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        // Все записи живы — проще начать заново, чем вести LRU на горячем пути
+        if (entries.size() >= maxSize) {
+            entries.clear();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
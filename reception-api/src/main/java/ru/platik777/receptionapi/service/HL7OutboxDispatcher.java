@@ -0,0 +1,415 @@
+package ru.platik777.receptionapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.platik777.receptionapi.entity.OutboxMessage;
+import ru.platik777.receptionapi.hl7.AdtMessageWriter;
+import ru.platik777.receptionapi.hl7.CorrelationId;
+import ru.platik777.receptionapi.hl7.EncodedMessage;
+import ru.platik777.receptionapi.repository.OutboxMessageRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Доставляет сообщения из hl7_outbox в HIS. Сообщения одного пациента уходят строго по порядку,
+ * разные пациенты — параллельно на пуле hl7DispatchExecutor, при накоплении — HL7 пакетами.
+ * Отклонённый пакет переотправляется по одному сообщению, чтобы повтора ждали только плохие.
+ * <p>
+ * Ошибка ввода-вывода означает, что HIS недоступен, а не что плохо сообщение: отсрочка сообщений
+ * не растёт, outbox просто копится, а связь проверяется одним самым старым сообщением с нарастающим
+ * интервалом. Как только оно прошло, накопленная очередь выгружается по порядку без пауз.
+ * Повторы по отдельным сообщениям остаются для отказов HIS (MSA-1 не AA). После hl7.outbox.max-attempts
+ * отказов сообщение откладывается (parked_at) и больше не держит очередь пациента; число таких сообщений
+ * видно в метрике hl7.outbox.parked.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HL7OutboxDispatcher {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final HL7Service hl7Service;
+    private final ThreadPoolTaskExecutor hl7DispatchExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${hl7.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${hl7.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${hl7.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${hl7.outbox.retry-initial-ms:1000}")
+    private long retryInitialMs;
+
+    @Value("${hl7.outbox.retry-max-ms:60000}")
+    private long retryMaxMs;
+
+    @Value("${hl7.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "hl7-outbox-dispatcher"));
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    // null — связь с HIS есть
+    private volatile Instant linkDownSince;
+    private Instant nextProbeAt;
+    private int failedProbes;
+    // 0 — не идёт выгрузка накопленной очереди
+    private volatile long replayStartedNanos;
+    private final AtomicLong replayed = new AtomicLong();
+
+    private Counter deliveredLive;
+    private Counter deliveredReplay;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("hl7.outbox.depth", outboxMessageRepository, OutboxMessageRepository::countByParkedAtIsNull)
+                .description("Сообщения в hl7_outbox, ещё не доставленные в HIS")
+                .register(meterRegistry);
+        Gauge.builder("hl7.outbox.parked", outboxMessageRepository, OutboxMessageRepository::countByParkedAtIsNotNull)
+                .description("Сообщения, отклонённые HIS hl7.outbox.max-attempts раз и больше не отправляемые")
+                .register(meterRegistry);
+        Gauge.builder("hl7.link.up", this, dispatcher -> dispatcher.isLinkUp() ? 1 : 0)
+                .description("1 — HIS доступен, 0 — сообщения копятся в outbox")
+                .register(meterRegistry);
+        this.deliveredLive = Counter.builder("hl7.outbox.delivered").tag("mode", "live")
+                .description("Доставленные из outbox сообщения; mode=replay — выгрузка после недоступности HIS")
+                .register(meterRegistry);
+        this.deliveredReplay = Counter.builder("hl7.outbox.delivered").tag("mode", "replay")
+                .description("Доставленные из outbox сообщения; mode=replay — выгрузка после недоступности HIS")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener
+    public void onEnqueued(OutboxMessageEnqueued event) {
+        wakeUp();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${hl7.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    public void wakeUp() {
+        drainRequested.set(true);
+        if (draining.compareAndSet(false, true)) {
+            coordinator.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            while (drainRequested.getAndSet(false)) {
+                if (drainOnce()) {
+                    drainRequested.set(true);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Ошибка обработки HL7 outbox", e);
+        } finally {
+            draining.set(false);
+            if (drainRequested.get()) {
+                wakeUp();
+            }
+        }
+    }
+
+    /**
+     * @return true, если выбрана полная пачка — значит, очередь стоит перечитать сразу. Отклонённые сообщения
+     * к этому времени уже отсрочены и в следующую выборку не попадут.
+     */
+    private boolean drainOnce() {
+        if (!isLinkUp()) {
+            return probe();
+        }
+
+        List<OutboxMessage> pending = outboxMessageRepository.findDue(Instant.now(), PageRequest.of(0, batchSize));
+        if (pending.isEmpty()) {
+            finishReplay();
+            return false;
+        }
+
+        List<CompletableFuture<Integer>> deliveries = new ArrayList<>();
+        for (List<OutboxMessage> chunk : chunk(deliverable(pending).values())) {
+            deliveries.add(CompletableFuture.supplyAsync(() -> deliver(chunk), hl7DispatchExecutor));
+        }
+
+        deliveries.forEach(CompletableFuture::join);
+        boolean more = pending.size() == batchSize;
+        if (!more) {
+            finishReplay();
+        }
+        return more;
+    }
+
+    /**
+     * Для каждого пациента берём только сообщения до первого ожидающего повтора, чтобы не нарушить порядок.
+     */
+    private static Map<Long, List<OutboxMessage>> deliverable(List<OutboxMessage> pending) {
+        Instant now = Instant.now();
+        Map<Long, List<OutboxMessage>> byPatient = new LinkedHashMap<>();
+        Set<Long> blocked = new HashSet<>();
+        for (OutboxMessage message : pending) {
+            Long patientId = message.getPatientId();
+            if (blocked.contains(patientId)) {
+                continue;
+            }
+            if (message.getNextAttemptAt().isAfter(now)) {
+                blocked.add(patientId);
+                continue;
+            }
+            byPatient.computeIfAbsent(patientId, id -> new ArrayList<>()).add(message);
+        }
+        return byPatient;
+    }
+
+    /**
+     * Пока HIS недоступен, в назначенное время отправляется одно самое старое сообщение из готовых к отправке.
+     *
+     * @return true, если связь восстановилась и очередь надо выгружать сразу
+     */
+    private boolean probe() {
+        synchronized (this) {
+            if (Instant.now().isBefore(nextProbeAt)) {
+                return false;
+            }
+        }
+
+        List<OutboxMessage> pending = outboxMessageRepository.findDue(Instant.now(), PageRequest.of(0, batchSize));
+        Iterator<List<OutboxMessage>> groups = deliverable(pending).values().iterator();
+        if (groups.hasNext()) {
+            return deliver(List.of(groups.next().get(0))) > 0;
+        }
+        // Готовых сообщений нет — проверять нечем, связь считается восстановленной до следующей ошибки
+        markLinkUp();
+        return !pending.isEmpty();
+    }
+
+    private boolean isLinkUp() {
+        return linkDownSince == null;
+    }
+
+    private synchronized void markLinkDown(Exception e) {
+        Instant now = Instant.now();
+        if (linkDownSince == null) {
+            linkDownSince = now;
+            failedProbes = 0;
+            replayStartedNanos = 0;
+            log.warn("HIS недоступен, сообщения копятся в outbox: {}", e.getMessage());
+        } else if (now.isBefore(nextProbeAt)) {
+            // Параллельные отправки того же прохода, интервал уже назначен
+            return;
+        } else {
+            failedProbes++;
+        }
+        long delay = Math.min(retryMaxMs, retryInitialMs << Math.min(failedProbes, 20));
+        nextProbeAt = now.plusMillis(delay);
+        log.debug("Следующая проверка связи с HIS через {} мс", delay);
+    }
+
+    private void markLinkUp() {
+        if (linkDownSince != null) {
+            linkUp();
+        }
+    }
+
+    private synchronized void linkUp() {
+        if (linkDownSince == null) {
+            return;
+        }
+        log.info("Связь с HIS восстановлена после {} мс, в outbox {} сообщений",
+                Duration.between(linkDownSince, Instant.now()).toMillis(),
+                outboxMessageRepository.countByParkedAtIsNull());
+        linkDownSince = null;
+        replayed.set(0);
+        replayStartedNanos = System.nanoTime();
+    }
+
+    private void finishReplay() {
+        long started = replayStartedNanos;
+        if (started == 0) {
+            return;
+        }
+        replayStartedNanos = 0;
+        long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        long count = replayed.get();
+        log.info("Накопленная очередь выгружена в HIS: {} сообщений за {} мс ({} сообщений/с)",
+                count, millis, count * 1000 / millis);
+    }
+
+    private void recordDelivered(int count) {
+        if (replayStartedNanos != 0) {
+            replayed.addAndGet(count);
+            deliveredReplay.increment(count);
+        } else {
+            deliveredLive.increment(count);
+        }
+    }
+
+    /**
+     * Без пакетного режима каждая группа пациента уходит отдельно. В пакетном режиме группы
+     * объединяются в пакеты до hl7.batch.max-size сообщений; группа пациента никогда не делится между пакетами.
+     */
+    private List<List<OutboxMessage>> chunk(Collection<List<OutboxMessage>> patientGroups) {
+        if (!batchEnabled) {
+            return new ArrayList<>(patientGroups);
+        }
+
+        List<List<OutboxMessage>> chunks = new ArrayList<>();
+        List<OutboxMessage> current = new ArrayList<>();
+        for (List<OutboxMessage> group : patientGroups) {
+            if (!current.isEmpty() && current.size() + group.size() > maxBatchSize) {
+                chunks.add(current);
+                current = new ArrayList<>();
+            }
+            current.addAll(group);
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private int deliver(List<OutboxMessage> messages) {
+        if (batchEnabled && messages.size() > 1) {
+            return deliverBatch(messages);
+        }
+        return deliverEach(messages);
+    }
+
+    /**
+     * Отправляет сообщения по одному. После отказа HIS остальные сообщения того же пациента ждут повтора,
+     * сообщения других пациентов уходят дальше.
+     */
+    private int deliverEach(List<OutboxMessage> messages) {
+        int delivered = 0;
+        Set<Long> rejected = new HashSet<>();
+        for (OutboxMessage message : messages) {
+            if (rejected.contains(message.getPatientId())) {
+                continue;
+            }
+            try {
+                send(message);
+                markLinkUp();
+                outboxMessageRepository.deleteDelivered(message.getId());
+                delivered++;
+            } catch (IOException e) {
+                markLinkDown(e);
+                break;
+            } catch (Exception e) {
+                scheduleRetry(message, e);
+                rejected.add(message.getPatientId());
+            }
+        }
+        recordDelivered(delivered);
+        return delivered;
+    }
+
+    private int deliverBatch(List<OutboxMessage> messages) {
+        try {
+            List<EncodedMessage> hl7Messages = new ArrayList<>(messages.size());
+            for (OutboxMessage message : messages) {
+                hl7Messages.add(encode(message));
+            }
+
+            log.debug("Пакет содержит сообщения {}", messages.stream().map(OutboxMessage::getControlId).toList());
+            hl7Service.sendBatch(hl7Messages);
+            markLinkUp();
+
+            outboxMessageRepository.deleteAllByIdInBatch(messages.stream().map(OutboxMessage::getId).toList());
+            recordDelivered(messages.size());
+            return messages.size();
+        } catch (IOException e) {
+            markLinkDown(e);
+            return 0;
+        } catch (Exception e) {
+            // HIS применяет пакет целиком или не применяет вовсе: по одному отказ получат только плохие сообщения
+            log.warn("Пакет из {} сообщений не принят, отправляем по одному: {}", messages.size(), e.getMessage());
+            return deliverEach(messages);
+        }
+    }
+
+    private static EncodedMessage encode(OutboxMessage message) {
+        return switch (message.getEventType()) {
+            case ADMISSION -> AdtMessageWriter.admission(message.toPatient(), message.getControlId());
+            case DISCHARGE -> AdtMessageWriter.discharge(message.toPatient(), message.getControlId());
+            case UPDATE -> AdtMessageWriter.update(message.toPatient(), message.getControlId());
+            case TRANSFER -> AdtMessageWriter.transfer(message.toPatient(), message.getControlId());
+        };
+    }
+
+    private void send(OutboxMessage message) throws Exception {
+        try (MDC.MDCCloseable ignored = CorrelationId.put(message.getControlId())) {
+            hl7Service.sendMessage(encode(message));
+        }
+    }
+
+    private void scheduleRetry(OutboxMessage message, Exception e) {
+        int attempt = message.getAttempts() + 1;
+        String error = String.valueOf(e.getMessage());
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+
+        if (attempt >= maxAttempts) {
+            outboxMessageRepository.park(message.getId(), Instant.now(), error);
+            try (MDC.MDCCloseable ignored = CorrelationId.put(message.getControlId())) {
+                log.error("{} пациента {} отклонено HIS {} раз и отложено: {}",
+                        message.getEventType(), message.getPatientId(), attempt, e.getMessage());
+            }
+            return;
+        }
+
+        long delay = Math.min(retryMaxMs, retryInitialMs << Math.min(attempt - 1, 20));
+        outboxMessageRepository.scheduleRetry(message.getId(), Instant.now().plusMillis(delay), error);
+
+        try (MDC.MDCCloseable ignored = CorrelationId.put(message.getControlId())) {
+            log.warn("Не удалось отправить {} пациента {} (попытка {}), повтор через {} мс: {}",
+                    message.getEventType(), message.getPatientId(), attempt, delay, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdown();
+    }
+}
@@ -3,112 +3,175 @@ package ru.platik777.receptionapi.service;
 import ca.uhn.hl7v2.DefaultHapiContext;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.HapiContext;
-import ca.uhn.hl7v2.app.Connection;
-import ca.uhn.hl7v2.app.Initiator;
-import ca.uhn.hl7v2.llp.LLPException;
-import ca.uhn.hl7v2.model.Message;
-import ca.uhn.hl7v2.model.v25.message.ADT_A01;
-import ca.uhn.hl7v2.model.v25.message.ADT_A03;
-import ca.uhn.hl7v2.parser.Parser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
-import ru.platik777.receptionapi.entity.Patient;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
+import ru.platik777.receptionapi.hl7.CorrelationId;
+import ru.platik777.receptionapi.hl7.EncodedMessage;
+import ru.platik777.receptionapi.hl7.HL7MessageLog;
+import ru.platik777.receptionapi.hl7.MllpConnection;
+import ru.platik777.receptionapi.hl7.MllpConnectionPool;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@Slf4j
+@RequiredArgsConstructor
 public class HL7Service {
 
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String BATCH_TYPE = "BATCH";
+
+    private final MllpConnectionPool connectionPool;
+    private final MeterRegistry meterRegistry;
+    private final HL7MessageLog messageLog;
+
     @Value("${hl7.server.host:localhost}")
     private String hl7ServerHost;
 
-    @Value("${hl7.server.port:2575}")
-    private int hl7ServerPort;
+    @Value("${hl7.batch.port:2576}")
+    private int hl7BatchPort;
+
+    @Value("${hl7.batch.connect-timeout-ms:3000}")
+    private int batchConnectTimeoutMs;
+
+    @Value("${hl7.batch.read-timeout-ms:30000}")
+    private int batchReadTimeoutMs;
+
+    @Value("${hl7.charset:UTF-8}")
+    private Charset charset;
 
     private HapiContext context;
-    private Parser parser;
 
     @PostConstruct
     public void init() {
         this.context = new DefaultHapiContext();
-        this.parser = context.getPipeParser();
     }
 
-    public void sendPatientAdmission(Patient patient) throws HL7Exception, IOException, LLPException {
-        ADT_A01 message = new ADT_A01();
-
-        message.initQuickstart("ADT", "A01", "P");
-        message.getMSH().getSendingApplication().getNamespaceID().setValue("RECEPTION");
-        message.getMSH().getSendingFacility().getNamespaceID().setValue("HOSPITAL");
-        message.getMSH().getReceivingApplication().getNamespaceID().setValue("HIS");
-        message.getMSH().getReceivingFacility().getNamespaceID().setValue("HOSPITAL");
-
-        message.getPID().getPatientIdentifierList(0).getIDNumber().setValue(patient.getId().toString());
-        message.getPID().getPatientName(0).getFamilyName().getSurname().setValue(patient.getLastName());
-        message.getPID().getPatientName(0).getGivenName().setValue(patient.getFirstName());
-        message.getPID().getDateTimeOfBirth().getTime().setValue(
-                patient.getDateOfBirth().format(DateTimeFormatter.ofPattern("yyyyMMdd"))
-        );
-
-        message.getEVN().getRecordedDateTime().getTime().setValue(
-                java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
-        );
-
-        sendMessage(message);
+    /**
+     * Следующий MSH-10 из генератора HAPI (счётчик в id_file переживает перезапуск).
+     */
+    public String nextControlId() {
+        try {
+            return context.getParserConfiguration().getIdGenerator().getID();
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось получить MSH-10", e);
+        }
     }
 
-    public void sendPatientDischarge(Patient patient) throws HL7Exception, IOException, LLPException {
-        ADT_A03 message = new ADT_A03();
-
-        message.initQuickstart("ADT", "A03", "P");
-        message.getMSH().getSendingApplication().getNamespaceID().setValue("RECEPTION");
-        message.getMSH().getSendingFacility().getNamespaceID().setValue("HOSPITAL");
-        message.getMSH().getReceivingApplication().getNamespaceID().setValue("HIS");
-        message.getMSH().getReceivingFacility().getNamespaceID().setValue("HOSPITAL");
+    public void sendBatch(List<EncodedMessage> messages) throws HL7Exception, IOException {
+        String batchControlId = nextControlId();
+        String header = "|^~\\&|RECEPTION|HOSPITAL|HIS|HOSPITAL|" + LocalDateTime.now().format(TIMESTAMP)
+                + "||||" + batchControlId;
+
+        StringBuilder batch = new StringBuilder(messages.size() * 256);
+        batch.append("FHS").append(header).append('\r');
+        batch.append("BHS").append(header).append('\r');
+        for (EncodedMessage message : messages) {
+            batch.append(message.text());
+            if (batch.charAt(batch.length() - 1) != '\r') {
+                batch.append('\r');
+            }
+        }
+        batch.append("BTS|").append(messages.size()).append('\r');
+        batch.append("FTS|1").append('\r');
 
-        message.getPID().getPatientIdentifierList(0).getIDNumber().setValue(patient.getId().toString());
-        message.getPID().getPatientName(0).getFamilyName().getSurname().setValue(patient.getLastName());
-        message.getPID().getPatientName(0).getGivenName().setValue(patient.getFirstName());
-        message.getPID().getDateTimeOfBirth().getTime().setValue(
-                patient.getDateOfBirth().format(DateTimeFormatter.ofPattern("yyyyMMdd"))
-        );
+        boolean samplePayload = messageLog.samplePayload();
+        if (samplePayload) {
+            messageLog.payload("Пакет в HIS", batchControlId, batch::toString);
+        }
 
-        message.getEVN().getRecordedDateTime().getTime().setValue(
-                java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
-        );
+        try (MDC.MDCCloseable ignored = CorrelationId.put(batchControlId)) {
+            long started = System.nanoTime();
+            String outcome = "error";
+            try {
+                String responseString;
+                try (MllpConnection connection = new MllpConnection(
+                        hl7ServerHost, hl7BatchPort, batchConnectTimeoutMs, batchReadTimeoutMs, charset)) {
+                    responseString = connection.sendAndReceive(batch.toString());
+                }
+                if (samplePayload) {
+                    messageLog.payload("Ответ HIS на пакет", batchControlId, () -> responseString);
+                }
 
-        sendMessage(message);
+                String[] msa = findSegment(responseString, "MSA");
+                String ackCode = msa.length > 1 ? msa[1] : null;
+                messageLog.batchSent(batchControlId, messages.size(), ackCode, System.nanoTime() - started);
+                if (!"AA".equals(ackCode) && !"CA".equals(ackCode)) {
+                    outcome = "rejected";
+                    String text = msa.length > 3 ? msa[3] : "";
+                    throw new HL7Exception("HIS отклонил пакет " + batchControlId + ", MSA-1=" + ackCode + ": " + text);
+                }
+                outcome = "success";
+            } finally {
+                recordSend(BATCH_TYPE, outcome, System.nanoTime() - started);
+                meterRegistry.summary("hl7.send.batch.size").record(messages.size());
+            }
+        }
     }
 
-    private void sendMessage(Message message) throws HL7Exception, IOException, LLPException {
-        String encodedMessage = parser.encode(message);
+    private static String[] findSegment(String encoded, String name) {
+        for (String segment : encoded.split("[\r\n]+")) {
+            if (segment.startsWith(name + "|")) {
+                return segment.split("\\|", -1);
+            }
+        }
+        return new String[0];
+    }
 
-        log.info("=== Отправка HL7 сообщения ===");
-        log.info("Исходный формат HL7:\n{}", encodedMessage);
-        log.info("==============================");
+    /**
+     * Отправляет одно сообщение через пул и проверяет MSA-1. Время до разбора ACK пишется в hl7.send
+     * с типом сообщения и исходом (success, rejected, error). ACK не разбирается HAPI целиком —
+     * достаточно сегмента MSA.
+     */
+    public void sendMessage(EncodedMessage message) throws HL7Exception, IOException {
+        String controlId = message.controlId();
+
+        boolean samplePayload = messageLog.samplePayload();
+        if (samplePayload) {
+            messageLog.payload("Сообщение в HIS", controlId, message::text);
+        }
 
-        Connection connection = null;
+        long started = System.nanoTime();
+        String outcome = "error";
         try {
-            connection = context.newClient(hl7ServerHost, hl7ServerPort, false);
-            Initiator initiator = connection.getInitiator();
-            Message response = initiator.sendAndReceive(message);
-
-            String responseString = parser.encode(response);
-            log.info("=== Ответ от HIS ===");
-            log.info("{}", responseString);
-            log.info("===================");
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                    log.warn("Ошибка при закрытии соединения", e);
-                }
+            String responseString = connectionPool.sendAndReceive(message.text());
+            if (samplePayload) {
+                messageLog.payload("Ответ HIS", controlId, () -> responseString);
+            }
+
+            String[] msa = findSegment(responseString, "MSA");
+            String ackCode = msa.length > 1 ? msa[1] : null;
+            messageLog.sent(message.type(), controlId, message.patientId(), ackCode, System.nanoTime() - started);
+            if (!"AA".equals(ackCode) && !"CA".equals(ackCode)) {
+                outcome = "rejected";
+                String text = msa.length > 3 ? msa[3] : "";
+                throw new HL7Exception("HIS отклонил сообщение " + controlId + ", MSA-1=" + ackCode + ": " + text);
             }
+            outcome = "success";
+        } finally {
+            recordSend(message.type(), outcome, System.nanoTime() - started);
+        }
+    }
+
+    private void recordSend(String messageType, String outcome, long nanos) {
+        Timer.builder("hl7.send")
+                .description("Отправка в HIS до получения ACK")
+                .tag("type", messageType)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (!"success".equals(outcome)) {
+            meterRegistry.counter("hl7.send.errors", "type", messageType, "reason", outcome).increment();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,3 @@
+package ru.platik777.receptionapi.service;
+
+public record OutboxMessageEnqueued(int count) {}
@@ -0,0 +1,129 @@
+package ru.platik777.receptionapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.platik777.receptionapi.dto.PatientResponse;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.repository.PatientRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка всего реестра пациентов. Строки читаются курсором и сразу пишутся в ответ,
+ * поэтому расход памяти не зависит от размера таблицы.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PatientExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format of(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final String CSV_HEADER = "id,firstName,lastName,dateOfBirth";
+
+    private final PatientRepository patientRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public void export(Format format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 8192);
+
+        long started = System.currentTimeMillis();
+        long[] rows = new long[1];
+
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Patient> patients = patientRepository.streamAllOrderById()) {
+                    patients.forEach(patient -> {
+                        try {
+                            if (format == Format.CSV) {
+                                writeCsv(writer, patient);
+                            } else {
+                                writer.write(objectMapper.writeValueAsString(PatientResponse.from(patient)));
+                            }
+                            writer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        // Persistence context не должен расти вместе с выгрузкой
+                        entityManager.detach(patient);
+                        rows[0]++;
+                    });
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+
+        log.info("Выгружено {} пациентов в формате {}{} за {} мс",
+                rows[0], format, gzip ? " (gzip)" : "", System.currentTimeMillis() - started);
+    }
+
+    private static void writeCsv(Writer writer, Patient patient) throws IOException {
+        writer.write(String.valueOf(patient.getId()));
+        writer.write(',');
+        writer.write(csv(patient.getFirstName()));
+        writer.write(',');
+        writer.write(csv(patient.getLastName()));
+        writer.write(',');
+        writer.write(String.valueOf(patient.getDateOfBirth()));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
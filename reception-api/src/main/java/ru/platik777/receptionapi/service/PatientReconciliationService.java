@@ -0,0 +1,219 @@
+package ru.platik777.receptionapi.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import ru.platik777.receptionapi.dto.RangeDigest;
+import ru.platik777.receptionapi.dto.ReconciliationReport;
+import ru.platik777.receptionapi.entity.OutboxMessage;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.repository.OutboxMessageRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Сверка пациентов с his-server по сводкам диапазонов id. Совпавшие части пропускаются, различающиеся
+ * делятся дальше на reconciliation.fanout частей, пока в части не останется не больше
+ * reconciliation.leaf-size строк; такие части сравниваются построчно. По итогу в outbox ставятся только
+ * нужные A01 (нет в HIS или данные другие) и A03 (есть только в HIS).
+ * <p>
+ * Сверка идёт только при пустом outbox: недоставленные сообщения дали бы ложные расхождения.
+ * Отложенные после отказов HIS сообщения не мешают — расхождения по ним сверка и исправляет.
+ * Первый шаг — сводка всего диапазона одной строкой: при полном совпадении сверка на нём и заканчивается.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PatientReconciliationService {
+
+    private static final TypeReference<List<RangeDigest>> DIGESTS = new TypeReference<>() {};
+    private static final TypeReference<List<Patient>> ROWS = new TypeReference<>() {};
+
+    private final PatientDigestService digestService;
+    private final PatientService patientService;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final RestClient hisRestClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${reconciliation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${reconciliation.fanout:16}")
+    private int fanout;
+
+    @Value("${reconciliation.leaf-size:64}")
+    private int leafSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Счётчики одного прохода сверки.
+     */
+    private static final class Progress {
+        long ranges;
+        long rows;
+        int admissions;
+        int discharges;
+        long hisBytes;
+    }
+
+    @Scheduled(initialDelayString = "${reconciliation.interval-ms:3600000}",
+            fixedDelayString = "${reconciliation.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (ReconciliationBusyException e) {
+            log.info("Сверка с HIS пропущена: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Ошибка сверки с HIS", e);
+        }
+    }
+
+    /**
+     * @throws ReconciliationBusyException если сверка уже идёт или в outbox есть недоставленные сообщения
+     */
+    public ReconciliationReport reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ReconciliationBusyException("Сверка уже идёт");
+        }
+        try {
+            long pending = outboxMessageRepository.countByParkedAtIsNull();
+            if (pending > 0) {
+                throw new ReconciliationBusyException("В outbox " + pending + " недоставленных сообщений");
+            }
+
+            long started = System.nanoTime();
+            Progress progress = new Progress();
+            RangeDigest mine = digestService.digest(0, Long.MAX_VALUE, 1).get(0);
+            RangeDigest theirs = fetchDigests(0, Long.MAX_VALUE, 1, progress).get(0);
+            progress.ranges++;
+            if (!same(mine, theirs)) {
+                long to = Math.max(maxId(mine), maxId(theirs)) + 1;
+                compareRange(0, to, Math.max(mine.count(), theirs.count()), progress);
+            }
+
+            long durationNanos = System.nanoTime() - started;
+            meterRegistry.timer("reconciliation.duration").record(durationNanos, TimeUnit.NANOSECONDS);
+            ReconciliationReport report = new ReconciliationReport(progress.ranges, progress.rows,
+                    progress.admissions, progress.discharges, progress.hisBytes,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            log.info("Сверка с HIS: {} пациентов, сравнено частей {}, строк {}, отправлено A01 {}, A03 {}, "
+                            + "получено от HIS {} байт за {} мс", mine.count(), report.rangesCompared(),
+                    report.rowsCompared(), report.admissionsResent(), report.dischargesResent(),
+                    report.hisBytes(), report.durationMs());
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void compareRange(long from, long to, long rows, Progress progress) {
+        if (rows <= leafSize || to - from <= fanout) {
+            compareRows(from, to, progress);
+            return;
+        }
+
+        List<RangeDigest> mine = digestService.digest(from, to, fanout);
+        List<RangeDigest> theirs = fetchDigests(from, to, fanout, progress);
+        if (mine.size() != theirs.size()) {
+            throw new IllegalStateException("HIS разделил диапазон [" + from + ", " + to + ") на "
+                    + theirs.size() + " частей вместо " + mine.size());
+        }
+
+        for (int i = 0; i < mine.size(); i++) {
+            RangeDigest part = mine.get(i);
+            RangeDigest other = theirs.get(i);
+            progress.ranges++;
+            if (part.from() != other.from() || part.to() != other.to()) {
+                throw new IllegalStateException("Границы частей reception-api и HIS не совпадают: ["
+                        + part.from() + ", " + part.to() + ") и [" + other.from() + ", " + other.to() + ")");
+            }
+            if (!same(part, other)) {
+                compareRange(part.from(), part.to(), Math.max(part.count(), other.count()), progress);
+            }
+        }
+    }
+
+    private void compareRows(long from, long to, Progress progress) {
+        List<Patient> mine = digestService.rows(from, to);
+        Map<Long, Patient> theirs = new LinkedHashMap<>();
+        for (Patient patient : fetchRows(from, to, progress)) {
+            theirs.put(patient.getId(), patient);
+        }
+        progress.rows += mine.size() + theirs.size();
+
+        List<Long> admissions = new ArrayList<>();
+        for (Patient patient : mine) {
+            Patient other = theirs.remove(patient.getId());
+            if (other == null || PatientDigestService.rowHash(patient) != PatientDigestService.rowHash(other)) {
+                admissions.add(patient.getId());
+            }
+        }
+        if (admissions.isEmpty() && theirs.isEmpty()) {
+            return;
+        }
+
+        for (OutboxMessage message : patientService.resend(admissions, new ArrayList<>(theirs.values()))) {
+            if (message.getEventType() == OutboxMessage.EventType.ADMISSION) {
+                progress.admissions++;
+            } else {
+                progress.discharges++;
+            }
+            meterRegistry.counter("reconciliation.resent", "type", message.getEventType().name()).increment();
+        }
+        log.debug("Расхождение в [{}, {}): A01 для {}, A03 для {}", from, to, admissions, theirs.keySet());
+    }
+
+    private List<RangeDigest> fetchDigests(long from, long to, int buckets, Progress progress) {
+        byte[] body = hisRestClient.get()
+                .uri("/api/patients/digest?from={from}&to={to}&buckets={buckets}", from, to, buckets)
+                .retrieve()
+                .body(byte[].class);
+        return read(body, DIGESTS, progress);
+    }
+
+    private List<Patient> fetchRows(long from, long to, Progress progress) {
+        byte[] body = hisRestClient.get()
+                .uri("/api/patients/digest/rows?from={from}&to={to}", from, to)
+                .retrieve()
+                .body(byte[].class);
+        return read(body, ROWS, progress);
+    }
+
+    private <T> T read(byte[] body, TypeReference<T> type, Progress progress) {
+        if (body == null) {
+            throw new IllegalStateException("Пустой ответ HIS");
+        }
+        progress.hisBytes += body.length;
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean same(RangeDigest mine, RangeDigest theirs) {
+        return mine.count() == theirs.count() && mine.hash().equals(theirs.hash());
+    }
+
+    private static long maxId(RangeDigest digest) {
+        return digest.maxId() == null ? 0 : digest.maxId();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.platik777.receptionapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.platik777.receptionapi.dto.PatientSearchRequest;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.repository.PatientRepository;
+
+import java.util.List;
+
+/**
+ * Поиск пациентов по префиксу фамилии/имени и дате рождения. Сортировка выбирается под ведущий
+ * критерий, чтобы запрос шёл диапазоном по индексу и останавливался на limit строк без сортировки.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PatientSearchService {
+
+    private static final Sort BY_LAST_NAME = Sort.by("lastNameNorm", "firstNameNorm", "id");
+    private static final Sort BY_FIRST_NAME = Sort.by("firstNameNorm", "lastNameNorm", "id");
+    private static final Sort BY_DATE_OF_BIRTH = Sort.by("dateOfBirth", "id");
+
+    private final PatientRepository patientRepository;
+
+    @Value("${patients.search.default-size:20}")
+    private int defaultSize;
+
+    @Value("${patients.search.max-size:100}")
+    private int maxSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void fillSearchColumns() {
+        int updated = patientRepository.fillMissingSearchColumns();
+        if (updated > 0) {
+            log.info("Заполнены поисковые колонки для {} пациентов", updated);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<Patient> search(PatientSearchRequest request) {
+        String lastName = Patient.normalizeName(request.getLastName());
+        String firstName = Patient.normalizeName(request.getFirstName());
+        boolean byLastName = lastName != null && !lastName.isEmpty();
+        boolean byFirstName = firstName != null && !firstName.isEmpty();
+        boolean byDate = request.getDateOfBirth() != null || request.getBornFrom() != null || request.getBornTo() != null;
+
+        if (!byLastName && !byFirstName && !byDate) {
+            throw new IllegalArgumentException("Не задан ни один критерий поиска");
+        }
+
+        Specification<Patient> spec = Specification.allOf();
+        if (byLastName) {
+            spec = spec.and(startsWith("lastNameNorm", lastName));
+        }
+        if (byFirstName) {
+            spec = spec.and(startsWith("firstNameNorm", firstName));
+        }
+        if (request.getDateOfBirth() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("dateOfBirth"), request.getDateOfBirth()));
+        } else {
+            if (request.getBornFrom() != null) {
+                spec = spec.and((root, query, cb) ->
+                        cb.greaterThanOrEqualTo(root.get("dateOfBirth"), request.getBornFrom()));
+            }
+            if (request.getBornTo() != null) {
+                spec = spec.and((root, query, cb) ->
+                        cb.lessThanOrEqualTo(root.get("dateOfBirth"), request.getBornTo()));
+            }
+        }
+
+        Sort sort = byLastName ? BY_LAST_NAME : byFirstName ? BY_FIRST_NAME : BY_DATE_OF_BIRTH;
+        Integer limit = request.getLimit();
+        int size = limit == null || limit <= 0 ? defaultSize : Math.min(limit, maxSize);
+
+        return patientRepository.findBy(spec, query -> query.sortBy(sort).limit(size).all());
+    }
+
+    private static Specification<Patient> startsWith(String attribute, String prefix) {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + '%';
+        return (root, query, cb) -> cb.like(root.get(attribute), pattern, '\\');
+    }
+}
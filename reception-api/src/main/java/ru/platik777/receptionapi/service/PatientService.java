@@ -0,0 +1,186 @@
+package ru.platik777.receptionapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.platik777.receptionapi.dto.PatientPage;
+import ru.platik777.receptionapi.dto.PatientRequest;
+import ru.platik777.receptionapi.entity.OutboxMessage;
+import ru.platik777.receptionapi.entity.Patient;
+import ru.platik777.receptionapi.repository.OutboxMessageRepository;
+import ru.platik777.receptionapi.repository.PatientRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PatientService {
+
+    private final PatientRepository patientRepository;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final HL7Service hl7Service;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${patients.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${patients.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Transactional
+    public Patient admitPatient(PatientRequest request) {
+        Patient patient = new Patient();
+        patient.setFirstName(request.getFirstName());
+        patient.setLastName(request.getLastName());
+        patient.setDateOfBirth(request.getDateOfBirth());
+        patient.setWard(request.getWard());
+        patient.setCreatedAt(LocalDate.now());
+
+        patient = patientRepository.save(patient);
+
+        enqueue(OutboxMessage.EventType.ADMISSION, patient);
+        return patient;
+    }
+
+    @Transactional
+    public List<Patient> admitPatients(List<PatientRequest> requests) {
+        List<Patient> patients = new ArrayList<>(requests.size());
+        for (PatientRequest request : requests) {
+            Patient patient = new Patient();
+            patient.setFirstName(request.getFirstName());
+            patient.setLastName(request.getLastName());
+            patient.setDateOfBirth(request.getDateOfBirth());
+            patient.setWard(request.getWard());
+            patient.setCreatedAt(LocalDate.now());
+            patients.add(patient);
+        }
+
+        patients = patientRepository.saveAll(patients);
+
+        List<OutboxMessage> messages = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            messages.add(OutboxMessage.of(OutboxMessage.EventType.ADMISSION, patient, hl7Service.nextControlId()));
+        }
+        outboxMessageRepository.saveAll(messages);
+        eventPublisher.publishEvent(new OutboxMessageEnqueued(messages.size()));
+
+        return patients;
+    }
+
+    @Transactional
+    public Patient dischargePatient(Long id) {
+        Patient patient = patientRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Пациент не найден"));
+
+        patientRepository.delete(patient);
+
+        enqueue(OutboxMessage.EventType.DISCHARGE, patient);
+        return patient;
+    }
+
+    /**
+     * Частичное изменение: null в запросе — поле не меняется. Изменились данные пациента — в HIS уходит A08
+     * с полным состоянием, только отделение — A02, ничего — сообщение не отправляется.
+     */
+    @Transactional
+    public Patient updatePatient(Long id, PatientRequest request) {
+        Patient patient = patientRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Пациент " + id + " не найден"));
+
+        boolean demographicsChanged = false;
+        if (request.getFirstName() != null && !request.getFirstName().equals(patient.getFirstName())) {
+            patient.setFirstName(request.getFirstName());
+            demographicsChanged = true;
+        }
+        if (request.getLastName() != null && !request.getLastName().equals(patient.getLastName())) {
+            patient.setLastName(request.getLastName());
+            demographicsChanged = true;
+        }
+        if (request.getDateOfBirth() != null && !request.getDateOfBirth().equals(patient.getDateOfBirth())) {
+            patient.setDateOfBirth(request.getDateOfBirth());
+            demographicsChanged = true;
+        }
+        boolean wardChanged = request.getWard() != null && !request.getWard().equals(patient.getWard());
+        if (wardChanged) {
+            patient.setWard(request.getWard());
+        }
+
+        if (demographicsChanged) {
+            enqueue(OutboxMessage.EventType.UPDATE, patient);
+        } else if (wardChanged) {
+            enqueue(OutboxMessage.EventType.TRANSFER, patient);
+        } else {
+            log.debug("Пациент {} не изменился, сообщение в HIS не отправляется", id);
+        }
+        return patient;
+    }
+
+    /**
+     * Повторная отправка по итогам сверки с HIS. Состояние перечитывается в этой транзакции: пациент,
+     * выписанный или добавленный уже после сравнения, не получит устаревшего сообщения.
+     *
+     * @param admissionIds пациенты, которых в HIS нет или у которых там другие данные, — A01 с текущим состоянием
+     * @param hisOnly      пациенты из HIS, которых здесь нет, — A03
+     * @return поставленные в очередь сообщения
+     */
+    @Transactional
+    public List<OutboxMessage> resend(List<Long> admissionIds, List<Patient> hisOnly) {
+        List<OutboxMessage> messages = new ArrayList<>(admissionIds.size() + hisOnly.size());
+        for (Patient patient : patientRepository.findAllById(admissionIds)) {
+            messages.add(OutboxMessage.of(OutboxMessage.EventType.ADMISSION, patient, hl7Service.nextControlId()));
+        }
+
+        Set<Long> present = new HashSet<>();
+        patientRepository.findAllById(hisOnly.stream().map(Patient::getId).toList())
+                .forEach(patient -> present.add(patient.getId()));
+        for (Patient patient : hisOnly) {
+            if (!present.contains(patient.getId())) {
+                messages.add(OutboxMessage.of(OutboxMessage.EventType.DISCHARGE, patient, hl7Service.nextControlId()));
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            outboxMessageRepository.saveAll(messages);
+            eventPublisher.publishEvent(new OutboxMessageEnqueued(messages.size()));
+        }
+        return messages;
+    }
+
+    private void enqueue(OutboxMessage.EventType eventType, Patient patient) {
+        String controlId = hl7Service.nextControlId();
+        outboxMessageRepository.save(OutboxMessage.of(eventType, patient, controlId));
+        eventPublisher.publishEvent(new OutboxMessageEnqueued(1));
+
+        log.info("{} пациента {} поставлено в очередь HL7, MSH-10 {}", eventType, patient.getId(), controlId);
+    }
+
+    /**
+     * Keyset-пагинация по id: выбирается limit + 1 строка, лишняя лишь показывает, что есть следующая страница.
+     */
+    @Transactional(readOnly = true)
+    public PatientPage getPatientsPage(Long after, Integer limit) {
+        int size = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, Limit.of(size + 1));
+
+        if (patients.size() <= size) {
+            return new PatientPage(patients, null);
+        }
+        patients = patients.subList(0, size);
+        return new PatientPage(patients, patients.get(size - 1).getId());
+    }
+
+    public long countPatients() {
+        return patientRepository.count();
+    }
+}
@@ -0,0 +1,8 @@
+package ru.platik777.receptionapi.service;
+
+public class ReconciliationBusyException extends RuntimeException {
+
+    public ReconciliationBusyException(String message) {
+        super(message);
+    }
+}
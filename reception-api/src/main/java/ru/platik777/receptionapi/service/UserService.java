@@ -0,0 +1,58 @@
+package ru.platik777.receptionapi.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.platik777.receptionapi.entity.User;
+import ru.platik777.receptionapi.repository.UserRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск пользователей с кэшем. Отсутствие пользователя тоже кэшируется, чтобы перебор
+ * несуществующих логинов не превращался в поток запросов к БД.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserService {
+
+    private record CachedUser(Optional<User> user, long loadedAt) {}
+
+    private final UserRepository userRepository;
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
+    @Value("${auth.user-cache.max-size:1000}")
+    private int maxSize;
+
+    @Value("${auth.user-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    public Optional<User> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        CachedUser cached = cache.get(username);
+        if (cached != null && now - cached.loadedAt() < ttlSeconds * 1000) {
+            return cached.user();
+        }
+
+        Optional<User> user = userRepository.findByUsername(username);
+        if (cache.size() >= maxSize) {
+            cache.clear();
+        }
+        cache.put(username, new CachedUser(user, now));
+        return user;
+    }
+
+    public User register(User user) {
+        try {
+            return userRepository.save(user);
+        } finally {
+            cache.remove(user.getUsername());
+        }
+    }
+}
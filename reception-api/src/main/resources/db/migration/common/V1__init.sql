@@ -0,0 +1,40 @@
+-- Схема reception-api. Пациенты и outbox получают id из последовательностей с шагом 50
+-- (pooled-оптимизатор Hibernate, META-INF/orm-prod.xml), пользователи — из identity.
+
+create table users (
+    id        bigint generated by default as identity primary key,
+    username  varchar(255) not null,
+    password  varchar(255) not null,
+    full_name varchar(255) not null,
+    constraint uk_users_username unique (username)
+);
+
+create sequence patients_seq start with 1 increment by 50;
+
+create table patients (
+    id              bigint       not null primary key,
+    first_name      varchar(255) not null,
+    last_name       varchar(255) not null,
+    date_of_birth   date         not null,
+    created_at      date,
+    last_name_norm  varchar(255),
+    first_name_norm varchar(255)
+);
+
+create index idx_patients_dob on patients (date_of_birth, id);
+
+create sequence hl7_outbox_seq start with 1 increment by 50;
+
+create table hl7_outbox (
+    id              bigint                   not null primary key,
+    event_type      varchar(16)              not null,
+    patient_id      bigint                   not null,
+    control_id      varchar(20),
+    first_name      varchar(255)             not null,
+    last_name       varchar(255)             not null,
+    date_of_birth   date                     not null,
+    attempts        integer                  not null,
+    next_attempt_at timestamp(6) with time zone not null,
+    created_at      timestamp(6) with time zone not null,
+    last_error      varchar(1000)
+);
@@ -0,0 +1,5 @@
+-- Отделение пациента (PV1-3): меняется переводом ADT^A02, передаётся и в A08.
+
+alter table patients add column ward varchar(64);
+
+alter table hl7_outbox add column ward varchar(64);
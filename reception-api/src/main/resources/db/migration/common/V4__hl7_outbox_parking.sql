@@ -0,0 +1,5 @@
+-- Сообщения, которые HIS отклонил hl7.outbox.max-attempts раз, остаются в hl7_outbox с отметкой parked_at.
+
+alter table hl7_outbox add column parked_at timestamp(6) with time zone;
+
+create index idx_hl7_outbox_patient on hl7_outbox (patient_id, id);
@@ -0,0 +1,2 @@
+create index idx_patients_last_first on patients (last_name_norm, first_name_norm, id);
+create index idx_patients_first_last on patients (first_name_norm, last_name_norm, id);
@@ -0,0 +1,7 @@
+-- Нормализованные имена (нижний регистр, ё -> е) в побайтовой сортировке "C": так LIKE 'префикс%'
+-- и ORDER BY поиска идут по одному индексу, а для кириллицы порядок совпадает с алфавитным.
+alter table patients alter column last_name_norm type varchar(255) collate "C";
+alter table patients alter column first_name_norm type varchar(255) collate "C";
+
+create index idx_patients_last_first on patients (last_name_norm, first_name_norm, id);
+create index idx_patients_first_last on patients (first_name_norm, last_name_norm, id);
@@ -0,0 +1,148 @@
+package ru.platik777.receptionapi.hl7;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.AbstractMessage;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.v25.message.ADT_A01;
+import ca.uhn.hl7v2.model.v25.message.ADT_A02;
+import ca.uhn.hl7v2.model.v25.message.ADT_A03;
+import ca.uhn.hl7v2.util.Terser;
+import ca.uhn.hl7v2.util.idgenerator.InMemoryIDGenerator;
+import org.junit.jupiter.api.Test;
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AdtMessageWriter против PipeParser.encode модели HAPI с теми же полями, MSH-7 и EVN-2.
+ */
+class AdtMessageWriterTest {
+
+    private static final OffsetDateTime NOW = OffsetDateTime.of(2026, 10, 17, 9, 30, 5, 123_000_000,
+            ZoneOffset.ofHours(3));
+    private static final String CONTROL_ID = "20261017093005001";
+
+    private final HapiContext context = new DefaultHapiContext();
+
+    AdtMessageWriterTest() {
+        context.getParserConfiguration().setIdGenerator(new InMemoryIDGenerator());
+    }
+
+    @Test
+    void admissionMatchesPipeParser() throws Exception {
+        Patient patient = patient("Иван", "Петров", null);
+
+        assertMatches(AdtMessageWriter.ADMISSION_TYPE, "||ADT^A01^ADT_A01|", ADT_A01.class, "A01", patient);
+    }
+
+    @Test
+    void admissionWithWardMatchesPipeParser() throws Exception {
+        Patient patient = patient("Ёлка", "Щукина-Эйхе", "Кардиология");
+
+        assertMatches(AdtMessageWriter.ADMISSION_TYPE, "||ADT^A01^ADT_A01|", ADT_A01.class, "A01", patient);
+    }
+
+    @Test
+    void dischargeMatchesPipeParser() throws Exception {
+        Patient patient = patient("Иван", "Петров", "Терапия");
+
+        assertMatches(AdtMessageWriter.DISCHARGE_TYPE, "||ADT^A03^ADT_A03|", ADT_A03.class, "A03", patient);
+    }
+
+    @Test
+    void updateMatchesPipeParser() throws Exception {
+        Patient patient = patient("Анна", "Сидорова", "Хирургия");
+
+        assertMatches(AdtMessageWriter.UPDATE_TYPE, "||ADT^A08^ADT_A01|", ADT_A01.class, "A08", patient);
+    }
+
+    @Test
+    void transferMatchesPipeParser() throws Exception {
+        Patient patient = patient("Анна", "Сидорова", "Неврология");
+
+        assertMatches(AdtMessageWriter.TRANSFER_TYPE, "||ADT^A02^ADT_A02|", ADT_A02.class, "A02", patient);
+    }
+
+    @Test
+    void transferWithoutWardMatchesPipeParser() throws Exception {
+        Patient patient = patient("Анна", "Сидорова", null);
+
+        assertMatches(AdtMessageWriter.TRANSFER_TYPE, "||ADT^A02^ADT_A02|", ADT_A02.class, "A02", patient);
+    }
+
+    @Test
+    void delimitersAreEscapedLikePipeParser() throws Exception {
+        Patient patient = patient("Ив|ан^", "Пет~ров\\&Ко", "Отд\rеление&1");
+
+        for (String trigger : new String[] {"A01", "A03", "A08"}) {
+            Class<? extends AbstractMessage> structure = trigger.equals("A03") ? ADT_A03.class : ADT_A01.class;
+            String type = "ADT_" + trigger;
+            assertMatches(type, "||ADT^" + trigger + "^" + structure.getSimpleName() + "|", structure, trigger,
+                    patient);
+        }
+        assertMatches(AdtMessageWriter.TRANSFER_TYPE, "||ADT^A02^ADT_A02|", ADT_A02.class, "A02", patient);
+    }
+
+    @Test
+    void emptyFirstNameMatchesPipeParser() throws Exception {
+        Patient patient = patient("", "Петров", "");
+
+        assertMatches(AdtMessageWriter.ADMISSION_TYPE, "||ADT^A01^ADT_A01|", ADT_A01.class, "A01", patient);
+    }
+
+    @Test
+    void encodedMessageCarriesTypeAndIds() {
+        EncodedMessage message = AdtMessageWriter.write(AdtMessageWriter.UPDATE_TYPE, "||ADT^A08^ADT_A01|",
+                patient("Иван", "Петров", null), CONTROL_ID, NOW);
+
+        assertThat(message.type()).isEqualTo("ADT_A08");
+        assertThat(message.controlId()).isEqualTo(CONTROL_ID);
+        assertThat(message.patientId()).isEqualTo("4217");
+        assertThat(message.text()).startsWith("MSH|^~\\&|RECEPTION|HOSPITAL|HIS|HOSPITAL|20261017093005.123+0300|");
+    }
+
+    private void assertMatches(String type, String msh9, Class<? extends AbstractMessage> structure, String trigger,
+                               Patient patient) throws Exception {
+        EncodedMessage written = AdtMessageWriter.write(type, msh9, patient, CONTROL_ID, NOW);
+
+        assertThat(written.text()).isEqualTo(context.getPipeParser().encode(hapi(structure, trigger, patient)));
+    }
+
+    private Message hapi(Class<? extends AbstractMessage> structure, String trigger, Patient patient) throws Exception {
+        AbstractMessage message = context.newMessage(structure);
+        message.initQuickstart("ADT", trigger, "P");
+
+        Terser terser = new Terser(message);
+        terser.set("/MSH-3", "RECEPTION");
+        terser.set("/MSH-4", "HOSPITAL");
+        terser.set("/MSH-5", "HIS");
+        terser.set("/MSH-6", "HOSPITAL");
+        terser.set("/MSH-7", "20261017093005.123+0300");
+        terser.set("/MSH-10", CONTROL_ID);
+        terser.set("/EVN-2", "20261017093005");
+        terser.set("/PID-3", patient.getId().toString());
+        terser.set("/PID-5-1", patient.getLastName());
+        terser.set("/PID-5-2", patient.getFirstName());
+        terser.set("/PID-7", "19800203");
+        if (patient.getWard() != null || structure == ADT_A02.class) {
+            terser.set("/PV1-2", "I");
+            terser.set("/PV1-3", patient.getWard());
+        }
+        return message;
+    }
+
+    private static Patient patient(String firstName, String lastName, String ward) {
+        Patient patient = new Patient();
+        patient.setId(4217L);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        patient.setDateOfBirth(LocalDate.of(1980, 2, 3));
+        patient.setWard(ward);
+        return patient;
+    }
+}
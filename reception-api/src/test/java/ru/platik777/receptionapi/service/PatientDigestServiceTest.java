@@ -0,0 +1,90 @@
+package ru.platik777.receptionapi.service;
+
+import org.junit.jupiter.api.Test;
+import ru.platik777.receptionapi.entity.Patient;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Хэш строки и ширина частей должны совпадать с PatientDigestService в his-server: иначе сверка увидит
+ * расхождения там, где их нет.
+ */
+class PatientDigestServiceTest {
+
+    private static final LocalDate BIRTH = LocalDate.of(1980, 2, 3);
+
+    @Test
+    void rowHashIsPinned() {
+        // Те же значения закреплены в PatientDigestServiceTest модуля his-server
+        assertThat(PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH, "Кардиология"))
+                .isEqualTo(0x124f49fcca9be273L);
+        assertThat(PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH, null))
+                .isEqualTo(0x05ca35c85cfb8b55L);
+    }
+
+    @Test
+    void emptyAndNullFieldsHashTheSame() {
+        assertThat(PatientDigestService.rowHash(42, "", "Петров", BIRTH, ""))
+                .isEqualTo(PatientDigestService.rowHash(42, null, "Петров", BIRTH, null));
+    }
+
+    @Test
+    void fieldBoundariesChangeTheHash() {
+        assertThat(PatientDigestService.rowHash(42, "аб", "в", BIRTH, null))
+                .isNotEqualTo(PatientDigestService.rowHash(42, "а", "бв", BIRTH, null));
+        assertThat(PatientDigestService.rowHash(42, "Иван", null, BIRTH, null))
+                .isNotEqualTo(PatientDigestService.rowHash(42, null, "Иван", BIRTH, null));
+    }
+
+    @Test
+    void everyTransferredFieldChangesTheHash() {
+        long hash = PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH, "Кардиология");
+
+        assertThat(PatientDigestService.rowHash(43, "Иван", "Петров", BIRTH, "Кардиология")).isNotEqualTo(hash);
+        assertThat(PatientDigestService.rowHash(42, "Иван", "Петрова", BIRTH, "Кардиология")).isNotEqualTo(hash);
+        assertThat(PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH.plusDays(1), "Кардиология"))
+                .isNotEqualTo(hash);
+        assertThat(PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH, "Терапия")).isNotEqualTo(hash);
+    }
+
+    @Test
+    void createdAtIsNotHashed() {
+        Patient first = patient(LocalDate.of(2026, 1, 1));
+        Patient second = patient(LocalDate.of(2026, 10, 17));
+
+        assertThat(PatientDigestService.rowHash(first)).isEqualTo(PatientDigestService.rowHash(second));
+        assertThat(PatientDigestService.rowHash(first))
+                .isEqualTo(PatientDigestService.rowHash(42, "Иван", "Петров", BIRTH, "Кардиология"));
+    }
+
+    @Test
+    void stepRoundsUp() {
+        assertThat(PatientDigestService.step(0, 10, 5)).isEqualTo(2);
+        assertThat(PatientDigestService.step(0, 10, 3)).isEqualTo(4);
+        assertThat(PatientDigestService.step(100, 1100, 16)).isEqualTo(63);
+    }
+
+    @Test
+    void stepIsAtLeastOne() {
+        assertThat(PatientDigestService.step(5, 7, 16)).isEqualTo(1);
+    }
+
+    @Test
+    void stepCoversTheWholeIdRange() {
+        assertThat(PatientDigestService.step(0, Long.MAX_VALUE, 1)).isEqualTo(Long.MAX_VALUE);
+        assertThat(PatientDigestService.step(0, Long.MAX_VALUE, 16)).isEqualTo(Long.MAX_VALUE / 16 + 1);
+    }
+
+    private static Patient patient(LocalDate createdAt) {
+        Patient patient = new Patient();
+        patient.setId(42L);
+        patient.setFirstName("Иван");
+        patient.setLastName("Петров");
+        patient.setDateOfBirth(BIRTH);
+        patient.setWard("Кардиология");
+        patient.setCreatedAt(createdAt);
+        return patient;
+    }
+}
@@ -14,10 +14,14 @@ interface User {
 }
 
 const API_URL = 'https://localhost:8080';
+const PAGE_SIZE = 100;
 
 export default function ReceptionUI() {
     const [user, setUser] = useState<User | null>(null);
     const [patients, setPatients] = useState<Patient[]>([]);
+    // Курсоры открытых страниц: pageCursors[i] — значение after для страницы i, у первой null
+    const [pageCursors, setPageCursors] = useState<(string | null)[]>([null]);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
 
     const [loginMode, setLoginMode] = useState(true);
     const [username, setUsername] = useState('');
@@ -29,6 +33,11 @@ export default function ReceptionUI() {
     const [dateOfBirth, setDateOfBirth] = useState('');
     const [loading, setLoading] = useState(false);
 
+    const [searchQuery, setSearchQuery] = useState('');
+    const [searchDate, setSearchDate] = useState('');
+    // null — поиск не задан, показывается полный список
+    const [searchResults, setSearchResults] = useState<Patient[] | null>(null);
+
     useEffect(() => {
         const savedToken = localStorage.getItem('token');
         const savedUsername = localStorage.getItem('username');
@@ -41,26 +50,82 @@ export default function ReceptionUI() {
 
     useEffect(() => {
         if (user) {
-            loadPatients();
+            setPageCursors([null]);
+            loadPage(null);
         }
     }, [user]);
 
-    const loadPatients = async () => {
+    // Загружается одна страница; следующая — только по кнопке, по курсору из X-Next-Cursor
+    const loadPage = async (after: string | null) => {
         if (!user) return;
 
         try {
-            const response = await fetch(`${API_URL}/api/patients`, {
+            const params = new URLSearchParams({ limit: String(PAGE_SIZE) });
+            if (after !== null) {
+                params.set('after', after);
+            }
+            const response = await fetch(`${API_URL}/api/patients?${params}`, {
                 headers: {
                     'Authorization': `Bearer ${user.token}`
                 }
             });
-            const data = await response.json();
+            const data: Patient[] = await response.json();
             setPatients(data);
+            setNextCursor(response.headers.get('X-Next-Cursor'));
         } catch (error) {
             console.error('Ошибка загрузки пациентов:', error);
         }
     };
 
+    const reloadCurrentPage = () => loadPage(pageCursors[pageCursors.length - 1]);
+
+    const showNextPage = async () => {
+        if (nextCursor === null) return;
+        setPageCursors([...pageCursors, nextCursor]);
+        await loadPage(nextCursor);
+    };
+
+    const showPreviousPage = async () => {
+        if (pageCursors.length < 2) return;
+        const previous = pageCursors.slice(0, -1);
+        setPageCursors(previous);
+        await loadPage(previous[previous.length - 1]);
+    };
+
+    const searchPatients = async () => {
+        if (!user) return;
+
+        // «Петров Ив» — префикс фамилии и префикс имени
+        const [last = '', first = ''] = searchQuery.trim().split(/\s+/);
+        if (!last && !searchDate) {
+            setSearchResults(null);
+            return;
+        }
+
+        const params = new URLSearchParams();
+        if (last) params.set('lastName', last);
+        if (first) params.set('firstName', first);
+        if (searchDate) params.set('dateOfBirth', searchDate);
+
+        try {
+            const response = await fetch(`${API_URL}/api/patients/search?${params}`, {
+                headers: {
+                    'Authorization': `Bearer ${user.token}`
+                }
+            });
+            if (response.ok) {
+                setSearchResults(await response.json());
+            }
+        } catch (error) {
+            console.error('Ошибка поиска пациентов:', error);
+        }
+    };
+
+    useEffect(() => {
+        const timer = setTimeout(searchPatients, 250);
+        return () => clearTimeout(timer);
+    }, [searchQuery, searchDate, user]);
+
     const handleAuth = async (e: React.FormEvent) => {
         e.preventDefault();
         setLoading(true);
@@ -109,6 +174,8 @@ export default function ReceptionUI() {
         localStorage.removeItem('username');
         localStorage.removeItem('fullName');
         setPatients([]);
+        setPageCursors([null]);
+        setNextCursor(null);
     };
 
     const handleAddPatient = async (e: React.FormEvent) => {
@@ -131,7 +198,10 @@ export default function ReceptionUI() {
                 setFirstName('');
                 setLastName('');
                 setDateOfBirth('');
-                await loadPatients();
+                // Новый пациент получает наибольший id и попадает на текущую страницу, только если она последняя
+                if (nextCursor === null) {
+                    await reloadCurrentPage();
+                }
                 alert('Пациент успешно добавлен');
             } else {
                 alert('Ошибка при добавлении пациента');
@@ -158,7 +228,8 @@ export default function ReceptionUI() {
             });
 
             if (response.ok) {
-                await loadPatients();
+                setPatients(prev => prev.filter(p => p.id !== id));
+                setSearchResults(prev => prev && prev.filter(p => p.id !== id));
                 alert('Пациент удалён');
             } else {
                 alert('Ошибка при удалении пациента');
@@ -169,6 +240,8 @@ export default function ReceptionUI() {
         }
     };
 
+    const visiblePatients = searchResults ?? patients;
+
     if (!user) {
         return (
             <div style={{
@@ -382,10 +455,44 @@ export default function ReceptionUI() {
                 borderRadius: '8px'
             }}>
                 <h2>Форма удаления пациента</h2>
-                <p>Текущие пациенты: {patients.length}</p>
+                {searchResults === null && (
+                    <p>
+                        Страница {pageCursors.length}, пациентов на странице: {patients.length}
+                        <button
+                            onClick={showPreviousPage}
+                            disabled={pageCursors.length < 2}
+                            style={{ marginLeft: '15px', padding: '5px 10px', cursor: 'pointer' }}
+                        >
+                            ← Назад
+                        </button>
+                        <button
+                            onClick={showNextPage}
+                            disabled={nextCursor === null}
+                            style={{ marginLeft: '5px', padding: '5px 10px', cursor: 'pointer' }}
+                        >
+                            Далее →
+                        </button>
+                    </p>
+                )}
+
+                <div style={{ marginBottom: '15px' }}>
+                    <input
+                        type="text"
+                        placeholder="Поиск: фамилия [имя]"
+                        value={searchQuery}
+                        onChange={(e) => setSearchQuery(e.target.value)}
+                        style={{ padding: '5px', width: '250px', marginRight: '10px' }}
+                    />
+                    <input
+                        type="date"
+                        value={searchDate}
+                        onChange={(e) => setSearchDate(e.target.value)}
+                        style={{ padding: '5px' }}
+                    />
+                </div>
 
-                {patients.length === 0 ? (
-                    <p>Нет зарегистрированных пациентов</p>
+                {visiblePatients.length === 0 ? (
+                    <p>{searchResults === null ? 'Нет зарегистрированных пациентов' : 'Ничего не найдено'}</p>
                 ) : (
                     <table style={{ width: '100%', borderCollapse: 'collapse' }}>
                         <thead>
@@ -398,7 +505,7 @@ export default function ReceptionUI() {
                         </tr>
                         </thead>
                         <tbody>
-                        {patients.map(patient => (
+                        {visiblePatients.map(patient => (
                             <tr key={patient.id}>
                                 <td style={{ border: '1px solid #ddd', padding: '8px' }}>
                                     {patient.id}